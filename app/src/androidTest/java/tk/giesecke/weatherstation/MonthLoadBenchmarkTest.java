@@ -0,0 +1,123 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+/**
+ * MonthLoadBenchmarkTest
+ * measures the load of the month view from the statistics table and checks the loaded
+ * max, min and average values against the samples they were calculated from
+ * runs on a separate test database, the records of the app are not touched
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class MonthLoadBenchmarkTest extends AndroidTestCase {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Bench";
+	/** Number of measured loads, the fastest one is logged */
+	private static final int ROUNDS = 5;
+	/** Day of the month without humidity readings */
+	private static final int DAY_WITHOUT_HUMIDITY = 5;
+	/** Day of the month without humidity readings before noon */
+	private static final int DAY_WITH_HALF_HUMIDITY = 9;
+
+	/** Database helper working on the test database */
+	private WSDatabaseHelper wsDbHelper;
+	/** The test database */
+	private SQLiteDatabase db;
+	/** Today's epoch day */
+	private int today;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		/** Context that prefixes the database name, so the app's database is not used */
+		Context context = new RenamingDelegatingContext(getContext(), "test_");
+		context.deleteDatabase(WSDatabaseHelper.DATABASE_NAME);
+		wsDbHelper = new WSDatabaseHelper(context);
+		db = wsDbHelper.getWritableDatabase();
+		today = Utils.getToday();
+		// A month of hourly samples, day d has the temperatures d + 0.0 ... d + 2.3,
+		// the pressure 1000 + d and the humidities 50 ... 73, one day has no humidity and
+		// one day only has the humidities of the afternoon
+		/** Bulk inserter for the samples */
+		BulkInserter inserter = wsDbHelper.startBulkInsert(db, 0);
+		for (int day = 0; day < WSDatabaseHelper.DAYS_TO_KEEP; day++) {
+			for (int hour = 0; hour < 24; hour++) {
+				inserter.insert(today + 1 - WSDatabaseHelper.DAYS_TO_KEEP + day, hour,
+						day + hour / 10f, 1000f + day,
+						day == DAY_WITHOUT_HUMIDITY || day == DAY_WITH_HALF_HUMIDITY && hour < 12 ?
+								Float.NaN : 50f + hour);
+			}
+		}
+		wsDbHelper.rebuildDayStats(db);
+		inserter.finish();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wsDbHelper.close();
+		super.tearDown();
+	}
+
+	/**
+	 * The month view gets one summary per day, oldest day first, with the values of
+	 * the samples of that day
+	 */
+	public void testMonthLoad() {
+		/** Fastest load of the month */
+		long fastest = Long.MAX_VALUE;
+		/** Summaries of the month */
+		DaySummaries summaries = null;
+		for (int round = 0; round < ROUNDS; round++) {
+			/** Start time of the load */
+			long startTime = System.nanoTime();
+			summaries = wsDbHelper.readDaySummaries(db, WSDatabaseHelper.DAYS_TO_KEEP);
+			fastest = Math.min(fastest, System.nanoTime() - startTime);
+		}
+		Log.i(LOG_TAG, "Month view load of " + summaries.size + " days: " + (fastest / 1000) + " us");
+
+		assertEquals(WSDatabaseHelper.DAYS_TO_KEEP, summaries.size);
+		for (int day = 0; day < summaries.size; day++) {
+			assertEquals(WSDatabaseHelper.DAYS_TO_KEEP - day, summaries.dayNumber[day]);
+			assertEquals(23, summaries.lastHour[day]);
+			assertEquals(day + 2.3f, summaries.maxTemp[day], 0.001f);
+			assertEquals(day, summaries.minTemp[day], 0.001f);
+			assertEquals(day + 1.15f, summaries.avgTemp[day], 0.001f);
+			assertEquals(1000f + day, summaries.maxPress[day], 0.001f);
+			assertEquals(1000f + day, summaries.minPress[day], 0.001f);
+			assertEquals(1000f + day, summaries.avgPress[day], 0.001f);
+			if (day == DAY_WITHOUT_HUMIDITY) {
+				assertTrue(Float.isNaN(summaries.maxHumid[day]));
+				assertTrue(Float.isNaN(summaries.minHumid[day]));
+				assertTrue(Float.isNaN(summaries.avgHumid[day]));
+			} else if (day == DAY_WITH_HALF_HUMIDITY) {
+				// The average only counts the samples with humidity
+				assertEquals(73f, summaries.maxHumid[day], 0.001f);
+				assertEquals(62f, summaries.minHumid[day], 0.001f);
+				assertEquals(67.5f, summaries.avgHumid[day], 0.001f);
+			} else {
+				assertEquals(73f, summaries.maxHumid[day], 0.001f);
+				assertEquals(50f, summaries.minHumid[day], 0.001f);
+				assertEquals(61.5f, summaries.avgHumid[day], 0.001f);
+			}
+		}
+	}
+
+	/**
+	 * A shorter range only gets the latest days
+	 */
+	public void testWeekLoad() {
+		/** Summaries of the last week */
+		DaySummaries summaries = wsDbHelper.readDaySummaries(db, 7);
+		assertEquals(7, summaries.size);
+		assertEquals(7, summaries.dayNumber[0]);
+		assertEquals(1, summaries.dayNumber[6]);
+		assertEquals(WSDatabaseHelper.DAYS_TO_KEEP - 1 + 2.3f, summaries.maxTemp[6], 0.001f);
+	}
+}
@@ -0,0 +1,178 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QueryPlanTest
+ * checks with EXPLAIN QUERY PLAN that the queries the app runs all the time use the
+ * index on day and hour or the primary key of the statistics table instead of a table
+ * scan or a temporary sort, e.g. after a change of the database layout
+ * runs on a separate test database, the records of the app are not touched
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class QueryPlanTest extends AndroidTestCase {
+
+	/** Database helper working on the test database */
+	private WSDatabaseHelper wsDbHelper;
+	/** The test database */
+	private SQLiteDatabase db;
+	/** Today's epoch day */
+	private int today;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		/** Context that prefixes the database name, so the app's database is not used */
+		Context context = new RenamingDelegatingContext(getContext(), "test_");
+		context.deleteDatabase(WSDatabaseHelper.DATABASE_NAME);
+		wsDbHelper = new WSDatabaseHelper(context);
+		db = wsDbHelper.getWritableDatabase();
+		today = Utils.getToday();
+		// A month of hourly samples, so the tables are not empty
+		/** Bulk inserter for the samples */
+		BulkInserter inserter = wsDbHelper.startBulkInsert(db, 0);
+		for (int day = today + 1 - WSDatabaseHelper.DAYS_TO_KEEP; day <= today; day++) {
+			for (int hour = 0; hour < 24; hour++) {
+				inserter.insert(day, hour, 20f + hour / 10f, 1013f, 50f);
+			}
+		}
+		wsDbHelper.rebuildDayStats(db);
+		inserter.finish();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wsDbHelper.close();
+		super.tearDown();
+	}
+
+	/**
+	 * getAll() reads the samples in the order of the index and finds the day of each
+	 * sample by the primary key of the statistics table
+	 */
+	public void testGetAllUsesIndexOrder() {
+		/** Steps of the query plan */
+		List<String> plan = getPlan(WSDatabaseHelper.allSql(today));
+		/** Flag if the samples are read through the index */
+		boolean usesIndex = false;
+		for (String step : plan) {
+			assertFalse("Temporary sort: " + plan, step.contains("TEMP B-TREE"));
+			if (step.contains(WSDatabaseHelper.INDEX_NAME)) {
+				usesIndex = true;
+			} else {
+				assertTrue("Join without key: " + plan, step.startsWith("SEARCH"));
+			}
+		}
+		assertTrue("Samples not read through the index: " + plan, usesIndex);
+	}
+
+	/**
+	 * The statistics of a day are found by the primary key before they are updated
+	 * and written back as one row per day
+	 */
+	public void testDayStatsUpsert() {
+		assertSearchOnly(WSDatabaseHelper.DAY_STATS_SQL);
+
+		/** Day after the filled month, not in the database yet */
+		int newDay = today + 1;
+		// The first sample has no humidity
+		assertTrue(wsDbHelper.addSample(db, 1, 1, newDay, 10f, 1000f, Float.NaN));
+		assertTrue(wsDbHelper.addSample(db, 2, 1, newDay, 14f, 1004f, 60f));
+		// A second sample for the same hour is ignored
+		assertTrue(wsDbHelper.addSample(db, 2, 1, newDay, 99f, 1099f, 99f));
+		/** Cursor with the statistics of the new day */
+		Cursor stats = db.rawQuery(WSDatabaseHelper.DAY_STATS_SQL, new String[]{Integer.toString(newDay)});
+		try {
+			assertEquals(1, stats.getCount());
+			assertTrue(stats.moveToFirst());
+			assertEquals(2, stats.getInt(0));
+			assertEquals(2, stats.getInt(1));
+			// Temperature: number of values, sum, max, min
+			assertEquals(2, stats.getInt(2));
+			assertEquals(24.0, stats.getDouble(3), 0.001);
+			assertEquals(14f, stats.getFloat(4), 0.001f);
+			assertEquals(10f, stats.getFloat(5), 0.001f);
+			// Humidity only has the value of the second sample
+			assertEquals(1, stats.getInt(10));
+			assertEquals(60.0, stats.getDouble(11), 0.001);
+			assertEquals(60f, stats.getFloat(12), 0.001f);
+			assertEquals(60f, stats.getFloat(13), 0.001f);
+		} finally {
+			stats.close();
+		}
+	}
+
+	/**
+	 * Removing the expired days deletes a range of the index and of the primary key
+	 */
+	public void testDeleteExpiredDaysUsesIndex() {
+		assertSearchOnly("DELETE FROM " + WSDatabaseHelper.TABLE_NAME +
+				" WHERE " + WSDatabaseHelper.EXPIRED_WHERE);
+		assertSearchOnly("DELETE FROM " + WSDatabaseHelper.STATS_TABLE_NAME +
+				" WHERE " + WSDatabaseHelper.EXPIRED_WHERE);
+	}
+
+	/**
+	 * The month view reads a range of the primary key, already in the right order
+	 */
+	public void testMonthSummariesUsePrimaryKey() {
+		assertSearchOnly(WSDatabaseHelper.summarySql(today, "ed>=?") + " ORDER BY ed");
+	}
+
+	/**
+	 * Check that every step of a query plan is a search and nothing is sorted
+	 *
+	 * @param query
+	 *            query with the epoch day as argument
+	 */
+	private void assertSearchOnly(String query) {
+		/** Steps of the query plan */
+		List<String> plan = getPlan(query);
+		assertFalse("No query plan for " + query, plan.isEmpty());
+		for (String step : plan) {
+			assertTrue("Table scan: " + plan, step.startsWith("SEARCH"));
+			assertFalse("Temporary sort: " + plan, step.contains("TEMP B-TREE"));
+		}
+	}
+
+	/**
+	 * Get the query plan of a query
+	 *
+	 * @param query
+	 *            query, all arguments are set to today's epoch day
+	 * @return <code>List<String></code>
+	 *            readable steps of the query plan
+	 */
+	private List<String> getPlan(String query) {
+		/** Number of arguments in this query */
+		int numArgs = query.length() - query.replace("?", "").length();
+		/** Arguments for the query plan */
+		String[] args = new String[numArgs];
+		for (int i = 0; i < numArgs; i++) {
+			args[i] = Integer.toString(today);
+		}
+		/** Steps of the query plan */
+		List<String> plan = new ArrayList<>();
+		/** Cursor with the query plan */
+		Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+		try {
+			/** Column with the readable plan step */
+			int detailColumn = cursor.getColumnIndex("detail");
+			while (cursor.moveToNext()) {
+				plan.add(cursor.getString(detailColumn));
+			}
+		} finally {
+			cursor.close();
+		}
+		return plan;
+	}
+}
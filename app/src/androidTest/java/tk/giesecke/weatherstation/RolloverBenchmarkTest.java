@@ -0,0 +1,129 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+/**
+ * RolloverBenchmarkTest
+ * measures the daily rollover with a growing number of kept records
+ * the rollover always removes the same expired day, so its cost must stay flat no matter
+ * how many records are kept, a renumbering of all records would grow with the history
+ * runs on a separate test database, the records of the app are not touched
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class RolloverBenchmarkTest extends AndroidTestCase {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Bench";
+	/** Samples per hour of the kept days, the history grows 64 times */
+	private static final int[] SAMPLES_PER_HOUR = {1, 8, 64};
+	/** Number of measured rollovers per history size, the fastest one is used */
+	private static final int ROUNDS = 3;
+	/** Allowed growth of the rollover time from the smallest to the largest history */
+	private static final long MAX_GROWTH = 4;
+	/** Allowed jitter of a measurement in nanoseconds */
+	private static final long JITTER_NS = 2000000L;
+
+	/** Database helper working on the test database */
+	private WSDatabaseHelper wsDbHelper;
+	/** The test database */
+	private SQLiteDatabase db;
+	/** Today's epoch day */
+	private int today;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		/** Context that prefixes the database name, so the app's database is not used */
+		Context context = new RenamingDelegatingContext(getContext(), "test_");
+		context.deleteDatabase(WSDatabaseHelper.DATABASE_NAME);
+		wsDbHelper = new WSDatabaseHelper(context);
+		db = wsDbHelper.getWritableDatabase();
+		today = Utils.getToday();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		wsDbHelper.close();
+		super.tearDown();
+	}
+
+	/**
+	 * The rollover removes exactly the expired day and takes about the same time
+	 * for a month of hourly samples as for 64 times more records
+	 */
+	public void testRolloverCostStaysFlat() {
+		/** Fastest rollover for each history size */
+		long[] times = new long[SAMPLES_PER_HOUR.length];
+		for (int size = 0; size < SAMPLES_PER_HOUR.length; size++) {
+			times[size] = Long.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++) {
+				fillHistory(SAMPLES_PER_HOUR[size]);
+				/** Start time of the rollover */
+				long startTime = System.nanoTime();
+				/** Number of deleted records */
+				int deleted = wsDbHelper.deleteExpiredDays(db);
+				times[size] = Math.min(times[size], System.nanoTime() - startTime);
+				assertEquals(24, deleted);
+				assertEquals(WSDatabaseHelper.DAYS_TO_KEEP * 24 * SAMPLES_PER_HOUR[size],
+						count(WSDatabaseHelper.TABLE_NAME));
+				assertEquals(WSDatabaseHelper.DAYS_TO_KEEP, count(WSDatabaseHelper.STATS_TABLE_NAME));
+			}
+			Log.i(LOG_TAG, "Rollover with " + WSDatabaseHelper.DAYS_TO_KEEP * 24 * SAMPLES_PER_HOUR[size] +
+					" kept records: " + (times[size] / 1000) + " us");
+		}
+		/** Rollover time with the largest history */
+		long largest = times[times.length - 1];
+		assertTrue("Rollover grows with the history: " + (times[0] / 1000) + " us -> " +
+				(largest / 1000) + " us", largest <= times[0] * MAX_GROWTH + JITTER_NS);
+	}
+
+	/**
+	 * Fill the test database with the kept days and one expired day of hourly samples
+	 *
+	 * @param samplesPerHour
+	 *            number of samples of each hour of the kept days
+	 */
+	private void fillHistory(int samplesPerHour) {
+		wsDbHelper.cleanDB(db);
+		/** Bulk inserter for the samples */
+		BulkInserter inserter = wsDbHelper.startBulkInsert(db, 0);
+		for (int hour = 0; hour < 24; hour++) {
+			inserter.insert(today - WSDatabaseHelper.DAYS_TO_KEEP, hour, 15f, 1010f, 45f);
+		}
+		for (int day = today + 1 - WSDatabaseHelper.DAYS_TO_KEEP; day <= today; day++) {
+			for (int hour = 0; hour < 24; hour++) {
+				for (int sample = 0; sample < samplesPerHour; sample++) {
+					inserter.insert(day, hour, 20f + hour / 10f, 1013f, 50f);
+				}
+			}
+		}
+		wsDbHelper.rebuildDayStats(db);
+		inserter.finish();
+	}
+
+	/**
+	 * Count the rows of a table
+	 *
+	 * @param table
+	 *            name of the table
+	 * @return <code>int</code>
+	 *            number of rows
+	 */
+	private int count(String table) {
+		/** Cursor with the number of rows */
+		Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+		try {
+			assertTrue(cursor.moveToFirst());
+			return cursor.getInt(0);
+		} finally {
+			cursor.close();
+		}
+	}
+}
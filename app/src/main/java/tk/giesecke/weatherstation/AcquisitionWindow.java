@@ -0,0 +1,126 @@
+package tk.giesecke.weatherstation;
+
+import java.util.Arrays;
+
+/**
+ * AcquisitionWindow
+ * collects several readings of temperature, pressure and humidity and combines them
+ * into one robust value per sensor, so a single warm-up or outlier reading does not
+ * end up in the database
+ * the readings are kept in preallocated primitive buffers, the buffers are sorted in
+ * place to get the median or the trimmed mean
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class AcquisitionWindow {
+
+	/** Channel of the temperature readings */
+	static final int TEMP = 0;
+	/** Channel of the pressure readings */
+	static final int PRESS = 1;
+	/** Channel of the humidity readings */
+	static final int HUMID = 2;
+
+	/** Combine the readings to their median */
+	static final int MEDIAN = 0;
+	/** Combine the readings to their mean without the highest and lowest readings */
+	static final int TRIMMED_MEAN = 1;
+
+	/** Readings of each channel */
+	private final float[][] values;
+	/** Number of readings of each channel */
+	private final int[] counts = new int[3];
+	/** How the readings are combined, MEDIAN or TRIMMED_MEAN */
+	private final int method;
+	/** Part of the readings removed at each end for the trimmed mean */
+	private final float trim;
+
+	/**
+	 * Create an empty window
+	 *
+	 * @param samples
+	 *            number of readings collected per channel
+	 * @param method
+	 *            MEDIAN or TRIMMED_MEAN
+	 * @param trim
+	 *            part of the readings removed at each end for the trimmed mean (0 ... <0.5)
+	 */
+	AcquisitionWindow(int samples, int method, float trim) {
+		values = new float[3][samples];
+		this.method = method;
+		this.trim = trim;
+	}
+
+	/**
+	 * Add a reading, readings are ignored when the channel is full
+	 *
+	 * @param channel
+	 *            TEMP, PRESS or HUMID
+	 * @param value
+	 *            measured value
+	 */
+	void add(int channel, float value) {
+		if (counts[channel] < values[channel].length) {
+			values[channel][counts[channel]++] = value;
+		}
+	}
+
+	/**
+	 * Check if a channel has all readings
+	 *
+	 * @param channel
+	 *            TEMP, PRESS or HUMID
+	 * @return <code>boolean</code>
+	 *            true if the channel is full
+	 */
+	boolean isFull(int channel) {
+		return counts[channel] == values[channel].length;
+	}
+
+	/**
+	 * Number of readings of a channel
+	 *
+	 * @param channel
+	 *            TEMP, PRESS or HUMID
+	 * @return <code>int</code>
+	 *            number of readings
+	 */
+	int getCount(int channel) {
+		return counts[channel];
+	}
+
+	/**
+	 * Combine the readings of a channel
+	 * Sorts the readings of the channel
+	 *
+	 * @param channel
+	 *            TEMP, PRESS or HUMID
+	 * @return <code>float</code>
+	 *            median or trimmed mean of the readings, 0 if there are none
+	 */
+	float getResult(int channel) {
+		/** Number of readings */
+		int count = counts[channel];
+		if (count == 0) {
+			return 0;
+		}
+		/** Readings of the channel */
+		float[] channelValues = values[channel];
+		Arrays.sort(channelValues, 0, count);
+		if (method == MEDIAN) {
+			if ((count & 1) == 1) {
+				return channelValues[count / 2];
+			}
+			return (channelValues[count / 2 - 1] + channelValues[count / 2]) / 2f;
+		}
+		/** Number of readings removed at each end */
+		int cut = Math.min((int) (count * trim), (count - 1) / 2);
+		/** Sum of the kept readings */
+		double sum = 0;
+		for (int i = cut; i < count - cut; i++) {
+			sum += channelValues[i];
+		}
+		return (float) (sum / (count - 2 * cut));
+	}
+}
@@ -6,7 +6,6 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
@@ -30,49 +29,15 @@ public class AutoStart extends BroadcastReceiver {
 		if (intent.getAction().equals("android.intent.action.BOOT_COMPLETED")) {
 			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "onReceive");
 
-			/** TODO check if day changed before restarting the background service */
-			/** If new day, initiate a shift of days in the database */
-
-			/** Integer array for current date and time */
-			int[] currTime = Utils.getCurrentDate();
-
-			/** Instance of weather db helper */
-			WSDatabaseHelper wsDbHelper;
-			/** Access to weather db  */
-			SQLiteDatabase dataBase;
-
-			wsDbHelper = new WSDatabaseHelper(context);
-			dataBase = wsDbHelper.getReadableDatabase();
-			/** Cursor filled with existing entries of today */
-			Cursor dayEntry = wsDbHelper.getAll(dataBase);
-			/** Last day we wrote an entry into the database */
-			int lastSavedDay = 0;
-			/** Last daynumber we wrote an entry into the database */
-			int lastSavedDayNumber = 0;
-
-			if (dayEntry.getCount() != 0) {
-				dayEntry.moveToLast();
-				lastSavedDay = dayEntry.getInt(2); // get day stamp of last entry
-				lastSavedDayNumber = dayEntry.getInt(3); // get daynumber of last entry
-			}
-			dayEntry.close();
-			dataBase.close();
-			wsDbHelper.close();
-
-			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Checking last entry - today = "+currTime[1]+
-					" - lastSavedDay = "+lastSavedDay+
-					" - lastSavedDayNumber = "+lastSavedDayNumber);
-			/* If last entry was not today and last daynumber of this entry is 1 we
-			 * need to shift the database entries
+			/* The records are stored with their absolute day, so nothing needs to be renumbered
+			 * after the device was switched off over midnight. Just remove the days that
+			 * expired in the meantime.
 			 */
-			if ((lastSavedDay != currTime[1]) && (lastSavedDay != 0) && (lastSavedDayNumber == 1)) {
-				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "initiate shift days in database");
-				wsDbHelper = new WSDatabaseHelper(context);
-				dataBase = wsDbHelper.getWritableDatabase();
-				wsDbHelper.shiftDays(dataBase);
-				dataBase.close();
-				wsDbHelper.close();
-			}
+			/** Access to weather db  */
+			SQLiteDatabase dataBase = DatabaseManager.open(context);
+			DatabaseManager.getHelper().deleteExpiredDays(dataBase);
+			DatabaseManager.release();
+			HistoryCache.invalidate();
 
             /* Setting the alarm here */
 			/** Intent of background service */
@@ -0,0 +1,147 @@
+package tk.giesecke.weatherstation;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * BulkInserter
+ * writes a large number of records into the database
+ * uses one compiled insert statement and commits the records in chunks
+ * instead of one implicit transaction per record
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class BulkInserter {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Bulk";
+
+	/** Access to weather db */
+	private final SQLiteDatabase dataBase;
+	/** Compiled insert statement, reused for every record */
+	private final SQLiteStatement insertStatement;
+	/** Number of records committed together, 0 = commit everything at the end */
+	private final int chunkSize;
+	/** Number of records in the open transaction */
+	private int rowsInChunk;
+	/** Number of records written */
+	private int rowCount;
+	/** Start time of the bulk load in nanoseconds */
+	private final long startTime;
+	/** Duration of the bulk load in nanoseconds, set by finish() */
+	private long duration;
+
+	/**
+	 * Start a bulk load
+	 * Opens the first transaction, so everything done on the database until the first
+	 * chunk is committed (e.g. deleting the old records) is committed together with it
+	 *
+	 * @param db
+	 *            pointer to database
+	 * @param insertSql
+	 *            insert statement with the arguments epoch day, hour, temperature, pressure, humidity
+	 * @param chunkSize
+	 *            number of records committed together, 0 = one transaction for all records
+	 */
+	BulkInserter(SQLiteDatabase db, String insertSql, int chunkSize) {
+		dataBase = db;
+		this.chunkSize = chunkSize;
+		startTime = System.nanoTime();
+		insertStatement = dataBase.compileStatement(insertSql);
+		dataBase.beginTransaction();
+	}
+
+	/**
+	 * Write one sample
+	 *
+	 * @param epochDay
+	 *            day of measurement as days since 1970-01-01 (local time)
+	 * @param timeStamp
+	 *            hour of measurement
+	 * @param temperature
+	 *            measured temperature, Float.NaN if there is no value
+	 * @param pressure
+	 *            measured pressure, Float.NaN if there is no value
+	 * @param humidity
+	 *            measured humidity, Float.NaN if there is no value
+	 * @return <code>boolean</code>
+	 *            true if the sample was written
+	 *            false if the insert failed
+	 */
+	boolean insert(int epochDay, int timeStamp, float temperature, float pressure, float humidity) {
+		insertStatement.bindLong(1, epochDay);
+		insertStatement.bindLong(2, timeStamp);
+		bindValue(3, temperature);
+		bindValue(4, pressure);
+		bindValue(5, humidity);
+		if (insertStatement.executeInsert() == -1) {
+			return false;
+		}
+		rowCount++;
+		if (chunkSize != 0 && ++rowsInChunk == chunkSize) {
+			dataBase.setTransactionSuccessful();
+			dataBase.endTransaction();
+			dataBase.beginTransaction();
+			rowsInChunk = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Bind a measured value, NULL if there is no value
+	 *
+	 * @param index
+	 *            index of the argument
+	 * @param value
+	 *            measured value, Float.NaN if there is no value
+	 */
+	private void bindValue(int index, float value) {
+		if (Float.isNaN(value)) {
+			insertStatement.bindNull(index);
+		} else {
+			insertStatement.bindDouble(index, value);
+		}
+	}
+
+	/**
+	 * Commit the remaining records and release the compiled statement
+	 *
+	 * @return <code>int</code>
+	 *            number of records written
+	 */
+	int finish() {
+		dataBase.setTransactionSuccessful();
+		dataBase.endTransaction();
+		insertStatement.close();
+		duration = System.nanoTime() - startTime;
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Bulk insert of " + rowCount + " records in " +
+				(duration / 1000000) + " ms = " + getRowsPerSecond() + " records/s");
+		return rowCount;
+	}
+
+	/**
+	 * Roll back the open chunk and release the compiled statement
+	 * Chunks that were already committed stay in the database
+	 */
+	void abort() {
+		dataBase.endTransaction();
+		insertStatement.close();
+		duration = System.nanoTime() - startTime;
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Bulk insert aborted after " + rowCount + " records");
+	}
+
+	/**
+	 * Throughput of the bulk load
+	 *
+	 * @return <code>int</code>
+	 *            written records per second, 0 if the load is not finished yet
+	 */
+	int getRowsPerSecond() {
+		if (duration == 0) {
+			return 0;
+		}
+		return (int) (rowCount * 1000000000L / duration);
+	}
+}
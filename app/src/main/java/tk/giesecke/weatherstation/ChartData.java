@@ -0,0 +1,59 @@
+package tk.giesecke.weatherstation;
+
+/**
+ * ChartData
+ * everything the charts need to show a view, prepared away from the UI thread
+ * values are already converted into the units the user selected and the
+ * ranges of the charts are already calculated
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class ChartData {
+
+	/** true -> continuous view without stored values */
+	boolean isContinuous;
+	/** true -> hourly records of a day, false -> daily records of the month */
+	boolean isDay;
+	/** Title of the X axis */
+	String xValueLabel;
+	/** Number of recorded days, only set if not continuous */
+	int numOfDays;
+	/** X values of the plots, hour of day (day view) or day of the recorded range (month view) */
+	int[] xValues = new int[0];
+	/** Day of the month shown in the day view */
+	int dayStamp;
+
+	/** Temperatures (day view) or average temperatures (month view) */
+	float[] temp = new float[0];
+	/** Max temperatures (month view only) */
+	float[] maxTemp;
+	/** Min temperatures (month view only) */
+	float[] minTemp;
+	/** Lowest temperature shown in the chart */
+	float tempRangeMin;
+	/** Highest temperature shown in the chart */
+	float tempRangeMax;
+
+	/** Pressures (day view) or average pressures (month view) */
+	float[] press = new float[0];
+	/** Max pressures (month view only) */
+	float[] maxPress;
+	/** Min pressures (month view only) */
+	float[] minPress;
+	/** Lowest pressure shown in the chart */
+	float pressRangeMin;
+	/** Highest pressure shown in the chart */
+	float pressRangeMax;
+
+	/** Humidity values (day view) or average humidity values (month view) */
+	float[] humid = new float[0];
+	/** Max humidity values (month view only) */
+	float[] maxHumid;
+	/** Min humidity values (month view only) */
+	float[] minHumid;
+	/** Lowest humidity shown in the chart */
+	float humidRangeMin;
+	/** Highest humidity shown in the chart */
+	float humidRangeMax;
+}
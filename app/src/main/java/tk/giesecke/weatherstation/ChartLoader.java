@@ -0,0 +1,123 @@
+package tk.giesecke.weatherstation;
+
+import android.os.AsyncTask;
+import android.util.Log;
+
+/**
+ * ChartLoader
+ * prepares the data of the day or month view in the background and attaches
+ * it to the charts on the UI thread
+ * every new request makes the older ones stale, a stale result is dropped
+ * so quick switches between the views only show the last requested view
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class ChartLoader extends AsyncTask<Void, Void, ChartData> {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Charts";
+
+	/** Number of the latest request, only used on the UI thread */
+	private static int latestRequest = 0;
+	/** The load that is running at the moment, null if none */
+	private static ChartLoader runningLoader = null;
+
+	/** Activity that shows the charts */
+	private final WeatherStation activity;
+	/** Number of this request */
+	private final int request;
+	/** true -> hourly records of a day, false -> daily records of the month */
+	private final boolean isDay;
+	/** Day to show (1 = today, 2 = yesterday, ...) */
+	private final int day;
+	/** Temperature unit when the load was requested */
+	private final int tempUnit;
+	/** Pressure unit when the load was requested */
+	private final int pressUnit;
+	/** Start time of the load for debug output */
+	private final long startTime = System.currentTimeMillis();
+
+	/**
+	 * Create a load request
+	 *
+	 * @param activity
+	 *            activity that shows the charts
+	 * @param request
+	 *            number of this request
+	 * @param isDay
+	 *            true -> get hourly records
+	 *            false -> get daily records
+	 * @param day
+	 *            day to show (1 = today, 2 = yesterday, ...)
+	 */
+	private ChartLoader(WeatherStation activity, int request, boolean isDay, int day) {
+		this.activity = activity;
+		this.request = request;
+		this.isDay = isDay;
+		this.day = day;
+		tempUnit = WeatherStation.tempUnit;
+		pressUnit = WeatherStation.pressUnit;
+	}
+
+	/**
+	 * Load the day or month view
+	 * A load that is still running is cancelled
+	 * Must be called from the UI thread
+	 *
+	 * @param activity
+	 *            activity that shows the charts
+	 * @param isDay
+	 *            true -> get hourly records
+	 *            false -> get daily records
+	 * @param day
+	 *            day to show (1 = today, 2 = yesterday, ...)
+	 */
+	static void load(WeatherStation activity, boolean isDay, int day) {
+		cancel();
+		runningLoader = new ChartLoader(activity, latestRequest, isDay, day);
+		// Do not wait behind export, backup or restore on the serial executor
+		runningLoader.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+	}
+
+	/**
+	 * Make all requested loads stale, e.g. because the continuous view is shown now
+	 * Must be called from the UI thread
+	 */
+	static void cancel() {
+		latestRequest++;
+		if (runningLoader != null) {
+			runningLoader.cancel(false);
+			runningLoader = null;
+		}
+	}
+
+	@Override
+	protected ChartData doInBackground(Void... params) {
+		if (isCancelled()) {
+			return null;
+		}
+		return Utils.prepareCharts(false, isDay, day, tempUnit, pressUnit);
+	}
+
+	@Override
+	protected void onPostExecute(ChartData data) {
+		if (request != latestRequest || activity.isFinishing()) {
+			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Dropped stale load " + request);
+			return;
+		}
+		runningLoader = null;
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Load " + request + " prepared in " +
+				(System.currentTimeMillis() - startTime) + " ms");
+		Utils.clearCharts();
+		Utils.attachCharts(data, activity);
+		if (isDay) {
+			activity.updateDayButtons();
+		}
+	}
+
+	@Override
+	protected void onCancelled(ChartData data) {
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Cancelled load " + request);
+	}
+}
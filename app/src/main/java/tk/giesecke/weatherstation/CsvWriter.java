@@ -0,0 +1,162 @@
+package tk.giesecke.weatherstation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * CsvWriter
+ * writes comma separated values into a file
+ * every line is formatted into one reused byte buffer that is written to the file
+ * channel in large blocks, no String is created for the values
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class CsvWriter {
+
+	/** Size of the write buffer */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** Space kept free in the buffer for one value */
+	private static final int MAX_VALUE_LENGTH = 32;
+
+	/** Stream of the CSV file */
+	private final FileOutputStream stream;
+	/** Channel to write into the CSV file */
+	private final FileChannel channel;
+	/** Buffer for the formatted lines */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	/** Wrapper of the buffer for the channel */
+	private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+	/** Line separator as used by PrintWriter.println() */
+	private final String lineSeparator = System.getProperty("line.separator");
+	/** Write position in the buffer */
+	private int pos;
+	/** Number of bytes written */
+	private long byteCount;
+
+	/**
+	 * Create a CSV file
+	 *
+	 * @param file
+	 *            file to write to
+	 * @throws IOException
+	 *            if the file cannot be created
+	 */
+	CsvWriter(File file) throws IOException {
+		stream = new FileOutputStream(file);
+		channel = stream.getChannel();
+	}
+
+	/**
+	 * Add an integer followed by a comma
+	 *
+	 * @param value
+	 *            value to write
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	void field(int value) throws IOException {
+		ensureRoom();
+		pos = FastFormat.appendInt(buffer, pos, value);
+		buffer[pos++] = ',';
+	}
+
+	/**
+	 * Add a float in the format of Float.toString() followed by a comma
+	 * Float.NaN (no value) is written as an empty field
+	 *
+	 * @param value
+	 *            value to write
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	void field(float value) throws IOException {
+		ensureRoom();
+		if (!Float.isNaN(value)) {
+			pos = FastFormat.appendFloat(buffer, pos, value);
+		}
+		buffer[pos++] = ',';
+	}
+
+	/**
+	 * Add a complete line of text
+	 *
+	 * @param text
+	 *            text to write, only ASCII characters
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	void line(String text) throws IOException {
+		if (pos + text.length() > BUFFER_SIZE - MAX_VALUE_LENGTH) {
+			flush();
+		}
+		pos = FastFormat.appendString(buffer, pos, text);
+		endLine();
+	}
+
+	/**
+	 * Finish the current line
+	 *
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	void endLine() throws IOException {
+		ensureRoom();
+		pos = FastFormat.appendString(buffer, pos, lineSeparator);
+	}
+
+	/**
+	 * Write the buffered lines to the file
+	 *
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	void flush() throws IOException {
+		byteBuffer.clear();
+		byteBuffer.limit(pos);
+		while (byteBuffer.hasRemaining()) {
+			channel.write(byteBuffer);
+		}
+		byteCount += pos;
+		pos = 0;
+	}
+
+	/**
+	 * Write the buffered lines and close the file
+	 *
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Number of bytes written to the file so far
+	 *
+	 * @return <code>long</code>
+	 *            written bytes
+	 */
+	long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Write the buffer to the file if there is no room for another value
+	 *
+	 * @throws IOException
+	 *            if the buffer could not be written to the file
+	 */
+	private void ensureRoom() throws IOException {
+		if (pos > BUFFER_SIZE - MAX_VALUE_LENGTH) {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DatabaseManager
+ * keeps one database helper and one open database for the whole process
+ * every user calls open() before and release() after accessing the database,
+ * the database is closed when the last user released it
+ * the activity keeps the database open while it is visible with keepOpen() and allowClose(),
+ * these never wait for the database, opening (including an upgrade of the database) and
+ * closing is done in the background
+ * jobs that must not be mixed with other writes (export, backup, restore) hold the
+ * exclusive lock, the sample writer waits for it before it writes
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class DatabaseManager {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_DBM";
+
+	/** The shared database helper */
+	private static WSDatabaseHelper wsDbHelper = null;
+	/** The shared open database */
+	private static SQLiteDatabase dataBase = null;
+	/** Number of users that hold the database open */
+	private static int refCount = 0;
+	/** Number of users that keep the database open without using it, changed without lock */
+	private static final AtomicInteger keepers = new AtomicInteger();
+	/** Number of calls to open() */
+	private static int openRequests = 0;
+	/** Number of times the database was really opened */
+	private static int realOpens = 0;
+	/** Held while a job needs the database for itself */
+	private static final ReentrantLock exclusiveLock = new ReentrantLock();
+
+	/**
+	 * Get access to the database
+	 * Opens the database if nobody else holds it open
+	 * Every call must be matched by a call to release()
+	 *
+	 * @param context
+	 *            any context of the app, only the application context is kept
+	 * @return <code>SQLiteDatabase</code>
+	 *            the shared database, ready for reading and writing
+	 */
+	static synchronized SQLiteDatabase open(Context context) {
+		openRequests++;
+		if (dataBase == null || !dataBase.isOpen()) {
+			if (wsDbHelper == null) {
+				wsDbHelper = new WSDatabaseHelper(context.getApplicationContext());
+			}
+			dataBase = wsDbHelper.getWritableDatabase();
+			realOpens++;
+			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Database opened, " + getAvoidedOpens() +
+					" of " + openRequests + " opens avoided");
+		}
+		refCount++;
+		return dataBase;
+	}
+
+	/**
+	 * Get the shared database helper
+	 * Only valid between open() and release()
+	 *
+	 * @return <code>WSDatabaseHelper</code>
+	 *            the shared database helper
+	 */
+	static synchronized WSDatabaseHelper getHelper() {
+		return wsDbHelper;
+	}
+
+	/**
+	 * Give up access to the database
+	 * Closes the database if this was the last user and nobody keeps it open
+	 */
+	static synchronized void release() {
+		if (refCount == 0) {
+			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "release() without open()");
+			return;
+		}
+		if (--refCount == 0 && keepers.get() == 0) {
+			close();
+		}
+	}
+
+	/**
+	 * Keep the database open until allowClose() is called
+	 * Returns at once, the database is opened in the background if it is closed, so
+	 * an upgrade of the database does not block the caller
+	 * Every call must be matched by a call to allowClose()
+	 *
+	 * @param context
+	 *            any context of the app, only the application context is kept
+	 */
+	static void keepOpen(Context context) {
+		keepers.incrementAndGet();
+		/** Application context, the activity can be gone when the job runs */
+		final Context appContext = context.getApplicationContext();
+		AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				open(appContext);
+				release();
+			}
+		});
+	}
+
+	/**
+	 * Allow the database to be closed again
+	 * Returns at once, the database is closed in the background if nobody else uses it
+	 */
+	static void allowClose() {
+		if (keepers.decrementAndGet() != 0) {
+			return;
+		}
+		AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (DatabaseManager.class) {
+					if (refCount == 0 && keepers.get() == 0) {
+						close();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Close the database
+	 * Only called while nobody uses it
+	 */
+	private static void close() {
+		if (wsDbHelper != null && dataBase != null) {
+			wsDbHelper.close();
+			dataBase = null;
+		}
+	}
+
+	/**
+	 * Wait until no other job or writer uses the database exclusively and take it over
+	 * Every call must be matched by a call to endExclusive() from the same thread
+	 */
+	static void beginExclusive() {
+		exclusiveLock.lock();
+	}
+
+	/**
+	 * Allow other jobs and writers to use the database again
+	 */
+	static void endExclusive() {
+		exclusiveLock.unlock();
+	}
+
+	/**
+	 * Number of calls to open() that found the database already open
+	 *
+	 * @return <code>int</code>
+	 *            avoided opens
+	 */
+	static synchronized int getAvoidedOpens() {
+		return openRequests - realOpens;
+	}
+}
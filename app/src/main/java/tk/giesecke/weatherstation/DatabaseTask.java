@@ -0,0 +1,304 @@
+package tk.giesecke.weatherstation;
+
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.os.AsyncTask;
+import android.util.Log;
+
+/**
+ * DatabaseTask
+ * runs export, backup and restore of the database in the background
+ * shows the progress, can be cancelled and reports the result to the user
+ * only one of these jobs can run at a time
+ * the job only keeps the application context, the activity attaches and detaches its UI,
+ * so a job survives a rotation and a result that arrives without an activity is shown
+ * when the next activity attaches
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class DatabaseTask extends AsyncTask<Void, Integer, Boolean> {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Task";
+
+	/** Job: export database as CSV file */
+	static final int EXPORT = 0;
+	/** Job: backup database as JSON file */
+	static final int BACKUP = 1;
+	/** Job: restore database from JSON file */
+	static final int RESTORE = 2;
+
+	/** Number of records between two progress updates */
+	static final int PROGRESS_STEP = 100;
+
+	/** The job that is running at the moment, null if none */
+	private static DatabaseTask runningTask = null;
+	/** Activity that shows progress and results, null if no activity is attached */
+	private static Context uiContext = null;
+	/** Title of a result that arrived while no activity was attached, null if none */
+	private static String pendingTitle = null;
+	/** Message of a result that arrived while no activity was attached */
+	private static String pendingMessage = null;
+
+	/** Application context */
+	private final Context context;
+	/** The job of this task */
+	private final int job;
+	/** Dialog showing the progress, null if no activity is attached */
+	private ProgressDialog progressDialog = null;
+	/** Processed records (kB for restore) of the last progress update */
+	private int progressDone = 0;
+	/** Total records (kB for restore) of the last progress update */
+	private int progressTotal = 0;
+
+	/**
+	 * Create a job
+	 *
+	 * @param context
+	 *            application context
+	 * @param job
+	 *            EXPORT, BACKUP or RESTORE
+	 */
+	private DatabaseTask(Context context, int job) {
+		this.context = context;
+		this.job = job;
+	}
+
+	/**
+	 * Start a job if no other job is running
+	 * Must be called from the UI thread
+	 *
+	 * @param activity
+	 *            activity that starts the job, it is attached to show the progress
+	 * @param job
+	 *            EXPORT, BACKUP or RESTORE
+	 * @return <code>boolean</code>
+	 *            true if the job was started
+	 *            false if another job is still running
+	 */
+	static boolean start(Context activity, int job) {
+		if (isRunning()) {
+			Utils.myAlert(activity, activity.getString(R.string.jobBusyTitle),
+					activity.getString(R.string.jobBusy));
+			return false;
+		}
+		uiContext = activity;
+		runningTask = new DatabaseTask(activity.getApplicationContext(), job);
+		runningTask.execute();
+		return true;
+	}
+
+	/**
+	 * Check if a job is running
+	 * Must be called from the UI thread
+	 *
+	 * @return <code>boolean</code>
+	 *            true if export, backup or restore is running
+	 */
+	static boolean isRunning() {
+		return runningTask != null;
+	}
+
+	/**
+	 * Show progress and results in an activity
+	 * Called from onCreate() of the activity, shows the progress of a running job
+	 * and the result of a job that ended while no activity was attached
+	 *
+	 * @param activity
+	 *            activity that shows progress and results
+	 */
+	static void attach(Context activity) {
+		uiContext = activity;
+		if (runningTask != null) {
+			runningTask.showProgress();
+		}
+		if (pendingTitle != null) {
+			Utils.myAlert(activity, pendingTitle, pendingMessage);
+			pendingTitle = null;
+			pendingMessage = null;
+		}
+	}
+
+	/**
+	 * Stop showing progress and results in an activity
+	 * Called from onDestroy() of the activity, the job keeps running
+	 *
+	 * @param activity
+	 *            activity that is destroyed
+	 */
+	static void detach(Context activity) {
+		if (uiContext != activity) {
+			return;
+		}
+		if (runningTask != null) {
+			runningTask.hideProgress();
+		}
+		uiContext = null;
+	}
+
+	/**
+	 * Report the progress of the job
+	 * Called from the background thread
+	 *
+	 * @param done
+	 *            processed records (kB for restore)
+	 * @param total
+	 *            total records (kB for restore)
+	 */
+	void reportProgress(int done, int total) {
+		publishProgress(done, total);
+	}
+
+	@Override
+	protected void onPreExecute() {
+		showProgress();
+	}
+
+	@Override
+	protected Boolean doInBackground(Void... params) {
+		/** Start time of the job for debug output */
+		long startTime = System.currentTimeMillis();
+		/** Result of the job */
+		boolean success;
+		// New samples wait until the job is finished, a restore that fails half way
+		// removes everything it added and must not take new samples with it
+		DatabaseManager.beginExclusive();
+		try {
+			switch (job) {
+				case EXPORT:
+					success = WSDatabaseHelper.exportDatabase(this);
+					break;
+				case BACKUP:
+					success = WSDatabaseHelper.backupDBasJSON(this);
+					break;
+				default:
+					success = !WSDatabaseHelper.restoreDBfromJSON(this);
+					break;
+			}
+		} finally {
+			DatabaseManager.endExclusive();
+		}
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Job " + job + " finished in " +
+				(System.currentTimeMillis() - startTime) + " ms, success = " + success);
+		return success;
+	}
+
+	@Override
+	protected void onProgressUpdate(Integer... values) {
+		progressDone = values[0];
+		progressTotal = values[1];
+		if (progressDialog != null) {
+			progressDialog.setMax(progressTotal);
+			progressDialog.setProgress(progressDone);
+		}
+	}
+
+	@Override
+	protected void onPostExecute(Boolean success) {
+		switch (job) {
+			case EXPORT:
+				if (success) {
+					finishJob(context.getString(R.string.succExportTitle),
+							context.getString(R.string.succExport, WeatherStation.exportFilePath));
+				} else {
+					finishJob(context.getString(R.string.errorExportTitle),
+							context.getString(R.string.errorExport));
+				}
+				break;
+			case BACKUP:
+				if (success) {
+					finishJob(context.getString(R.string.succBackupTitle),
+							context.getString(R.string.succBackup, WeatherStation.exportFilePath));
+				} else {
+					finishJob(context.getString(R.string.errorBackupTitle),
+							context.getString(R.string.errorBackup));
+				}
+				break;
+			default:
+				if (success) {
+					finishJob(context.getString(R.string.succRestoreTitle),
+							context.getString(R.string.succRestore, WeatherStation.restoreFilePath));
+				} else {
+					finishJob(context.getString(R.string.errorRestoreTitle),
+							context.getString(R.string.errorRestore));
+				}
+				break;
+		}
+	}
+
+	@Override
+	protected void onCancelled(Boolean success) {
+		finishJob(context.getString(R.string.jobCancelledTitle),
+				context.getString(R.string.jobCancelled));
+	}
+
+	/**
+	 * Show the progress dialog in the attached activity
+	 */
+	private void showProgress() {
+		if (uiContext == null || progressDialog != null) {
+			return;
+		}
+		progressDialog = new ProgressDialog(uiContext);
+		progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+		switch (job) {
+			case EXPORT:
+				progressDialog.setTitle(context.getString(R.string.progressExport));
+				break;
+			case BACKUP:
+				progressDialog.setTitle(context.getString(R.string.progressBackup));
+				break;
+			default:
+				progressDialog.setTitle(context.getString(R.string.progressRestore));
+				progressDialog.setProgressNumberFormat(context.getString(R.string.progressRestoreFormat));
+				break;
+		}
+		progressDialog.setCancelable(false);
+		progressDialog.setButton(DialogInterface.BUTTON_NEGATIVE,
+				context.getString(android.R.string.cancel),
+				new DialogInterface.OnClickListener() {
+					public void onClick(DialogInterface dialog, int which) {
+						// The job checks the flag and cleans up before it stops
+						cancel(false);
+					}
+				});
+		progressDialog.setMax(progressTotal);
+		progressDialog.setProgress(progressDone);
+		progressDialog.show();
+	}
+
+	/**
+	 * Close the progress dialog of the attached activity
+	 */
+	private void hideProgress() {
+		if (progressDialog == null) {
+			return;
+		}
+		if (progressDialog.isShowing()) {
+			progressDialog.dismiss();
+		}
+		progressDialog = null;
+	}
+
+	/**
+	 * Close the progress dialog, allow the next job to start and show the result
+	 * The result is kept until an activity attaches if there is none
+	 *
+	 * @param title
+	 *            title of the result
+	 * @param message
+	 *            result of the job
+	 */
+	private void finishJob(String title, String message) {
+		hideProgress();
+		runningTask = null;
+		if (uiContext != null) {
+			Utils.myAlert(uiContext, title, message);
+		} else {
+			pendingTitle = title;
+			pendingMessage = message;
+		}
+	}
+}
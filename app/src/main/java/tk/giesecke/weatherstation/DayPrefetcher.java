@@ -0,0 +1,235 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * DayPrefetcher
+ * keeps the samples of the last shown days ready for the day view charts,
+ * already converted into the units the user selected
+ * while a day is shown the days before and after it are prepared in the background,
+ * so paging with the next and last buttons does not wait for the data
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class DayPrefetcher {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Prefetch";
+
+	/** Number of prepared days that are kept */
+	private static final int CACHE_SIZE = 5;
+
+	/** Prepared days by epoch day, least recently used first */
+	private static final LinkedHashMap<Integer, PreparedDay> preparedDays =
+			new LinkedHashMap<Integer, PreparedDay>(CACHE_SIZE + 1, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, PreparedDay> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			};
+	/** Epoch days that are prepared in the background at the moment */
+	private static final Set<Integer> pendingDays = new HashSet<>();
+	/** Background thread that prepares the days */
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+	/** Number of days that were found prepared */
+	private static int hits = 0;
+	/** Number of days that had to be prepared on request */
+	private static int misses = 0;
+
+	/**
+	 * Samples of one day in user selected units
+	 */
+	private static class PreparedDay {
+		/** Converted samples of the day */
+		final DaySamples samples;
+		/** Temperature unit of the samples */
+		final int tempUnit;
+		/** Pressure unit of the samples */
+		final int pressUnit;
+		/** Version of the cached history the samples were taken from */
+		final int generation;
+
+		/**
+		 * Keep the converted samples of a day
+		 *
+		 * @param samples
+		 *            converted samples of the day
+		 * @param tempUnit
+		 *            temperature unit of the samples
+		 * @param pressUnit
+		 *            pressure unit of the samples
+		 * @param generation
+		 *            version of the cached history the samples were taken from
+		 */
+		PreparedDay(DaySamples samples, int tempUnit, int pressUnit, int generation) {
+			this.samples = samples;
+			this.tempUnit = tempUnit;
+			this.pressUnit = pressUnit;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * Get the samples of a day in user selected units
+	 * The returned samples are shared and must not be changed
+	 *
+	 * @param context
+	 *            any context of the app
+	 * @param dayNumber
+	 *            the day we want (1 = today, 2 = yesterday, ...)
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 * @return <code>DaySamples</code>
+	 *            converted samples of the day, ordered by hour
+	 */
+	static DaySamples getDay(Context context, int dayNumber, int tempUnit, int pressUnit) {
+		/** Epoch day of the requested day */
+		int epochDay = Utils.getToday() + 1 - dayNumber;
+		/** Prepared samples of the day */
+		PreparedDay day;
+		synchronized (preparedDays) {
+			day = preparedDays.get(epochDay);
+			if (isValid(day, tempUnit, pressUnit)) {
+				hits++;
+				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Day " + dayNumber + " was prepared, hit rate " +
+						getHitRate() + "%");
+				return day.samples;
+			}
+			misses++;
+		}
+		day = prepare(context, dayNumber, tempUnit, pressUnit);
+		synchronized (preparedDays) {
+			preparedDays.put(epochDay, day);
+		}
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Day " + dayNumber + " was not prepared, hit rate " +
+				getHitRate() + "%");
+		return day.samples;
+	}
+
+	/**
+	 * Prepare the days before and after a day in the background
+	 *
+	 * @param context
+	 *            any context of the app
+	 * @param dayNumber
+	 *            the day that is shown (1 = today, 2 = yesterday, ...)
+	 * @param numOfDays
+	 *            number of recorded days
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 */
+	static void prefetchNeighbours(Context context, int dayNumber, int numOfDays,
+	                               int tempUnit, int pressUnit) {
+		if (dayNumber > 1) {
+			prefetch(context, dayNumber - 1, tempUnit, pressUnit);
+		}
+		if (dayNumber < numOfDays) {
+			prefetch(context, dayNumber + 1, tempUnit, pressUnit);
+		}
+	}
+
+	/**
+	 * Percentage of requested days that were found prepared
+	 *
+	 * @return <code>int</code>
+	 *            hit rate in percent, 0 if no day was requested yet
+	 */
+	static int getHitRate() {
+		synchronized (preparedDays) {
+			return hits + misses == 0 ? 0 : 100 * hits / (hits + misses);
+		}
+	}
+
+	/**
+	 * Prepare a day in the background if it is not prepared already
+	 *
+	 * @param context
+	 *            any context of the app
+	 * @param dayNumber
+	 *            the day to prepare (1 = today, 2 = yesterday, ...)
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 */
+	private static void prefetch(Context context, final int dayNumber,
+	                             final int tempUnit, final int pressUnit) {
+		/** Epoch day of the day to prepare */
+		final int epochDay = Utils.getToday() + 1 - dayNumber;
+		/** Application context, the activity can be gone when the job runs */
+		final Context appContext = context.getApplicationContext();
+		synchronized (preparedDays) {
+			if (isValid(preparedDays.get(epochDay), tempUnit, pressUnit)
+					|| !pendingDays.add(epochDay)) {
+				return;
+			}
+		}
+		worker.execute(new Runnable() {
+			@Override
+			public void run() {
+				/** Prepared samples of the day */
+				PreparedDay day = prepare(appContext, dayNumber, tempUnit, pressUnit);
+				synchronized (preparedDays) {
+					pendingDays.remove(epochDay);
+					preparedDays.put(epochDay, day);
+				}
+				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Prefetched day " + dayNumber);
+			}
+		});
+	}
+
+	/**
+	 * Read the samples of a day and convert them
+	 *
+	 * @param context
+	 *            any context of the app
+	 * @param dayNumber
+	 *            the day to prepare (1 = today, 2 = yesterday, ...)
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 * @return <code>PreparedDay</code>
+	 *            converted samples of the day
+	 */
+	private static PreparedDay prepare(Context context, int dayNumber, int tempUnit, int pressUnit) {
+		// Read the version first, if the history changes meanwhile the day is prepared again
+		/** Version of the cached history */
+		int generation = HistoryCache.getGeneration();
+		/** Samples of the day */
+		DaySamples samples = HistoryCache.getDay(context, dayNumber);
+		samples.convertUnits(tempUnit, pressUnit);
+		return new PreparedDay(samples, tempUnit, pressUnit, generation);
+	}
+
+	/**
+	 * Check if a prepared day can be used
+	 *
+	 * @param day
+	 *            prepared day or null
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 * @return <code>boolean</code>
+	 *            true if the day was prepared in these units from the current history
+	 */
+	private static boolean isValid(PreparedDay day, int tempUnit, int pressUnit) {
+		return day != null && day.tempUnit == tempUnit && day.pressUnit == pressUnit
+				&& day.generation == HistoryCache.getGeneration();
+	}
+}
@@ -0,0 +1,51 @@
+package tk.giesecke.weatherstation;
+
+/**
+ * DaySamples
+ * all samples of one day, ordered by hour, stored in primitive arrays
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class DaySamples {
+
+	/** Number of samples */
+	final int size;
+	/** Day of the month, 0 if there are no samples */
+	int dayStamp;
+	/** Hour of each sample */
+	final int[] hour;
+	/** Temperature of each sample */
+	final float[] temp;
+	/** Pressure of each sample */
+	final float[] press;
+	/** Humidity of each sample */
+	final float[] humid;
+
+	/**
+	 * Create empty arrays for a number of samples
+	 *
+	 * @param size
+	 *            number of samples
+	 */
+	DaySamples(int size) {
+		this.size = size;
+		hour = new int[size];
+		temp = new float[size];
+		press = new float[size];
+		humid = new float[size];
+	}
+
+	/**
+	 * Convert temperatures and pressures from the stored units into the units the user selected
+	 *
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 */
+	void convertUnits(int tempUnit, int pressUnit) {
+		Utils.cToU(temp, tempUnit);
+		Utils.pToU(press, pressUnit);
+	}
+}
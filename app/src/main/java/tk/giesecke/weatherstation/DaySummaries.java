@@ -0,0 +1,88 @@
+package tk.giesecke.weatherstation;
+
+/**
+ * DaySummaries
+ * max, min and average values of a range of days
+ * one entry per recorded day, oldest day first, stored in primitive arrays
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class DaySummaries {
+
+	/** Number of days */
+	final int size;
+	/** Hour of the last sample of each day */
+	final int[] lastHour;
+	/** Day of the month */
+	final int[] dayStamp;
+	/** Day number (1 = today, 2 = yesterday, ...) */
+	final int[] dayNumber;
+	/** Max temperature of each day */
+	final float[] maxTemp;
+	/** Min temperature of each day */
+	final float[] minTemp;
+	/** Average temperature of each day */
+	final float[] avgTemp;
+	/** Max pressure of each day */
+	final float[] maxPress;
+	/** Min pressure of each day */
+	final float[] minPress;
+	/** Average pressure of each day */
+	final float[] avgPress;
+	/** Max humidity of each day */
+	final float[] maxHumid;
+	/** Min humidity of each day */
+	final float[] minHumid;
+	/** Average humidity of each day */
+	final float[] avgHumid;
+
+	/**
+	 * Create empty arrays for a number of days
+	 *
+	 * @param size
+	 *            number of days
+	 */
+	DaySummaries(int size) {
+		this.size = size;
+		lastHour = new int[size];
+		dayStamp = new int[size];
+		dayNumber = new int[size];
+		maxTemp = new float[size];
+		minTemp = new float[size];
+		avgTemp = new float[size];
+		maxPress = new float[size];
+		minPress = new float[size];
+		avgPress = new float[size];
+		maxHumid = new float[size];
+		minHumid = new float[size];
+		avgHumid = new float[size];
+	}
+
+	/**
+	 * Convert temperatures and pressures from the stored units into the units the user selected
+	 *
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 */
+	void convertUnits(int tempUnit, int pressUnit) {
+		Utils.cToU(maxTemp, tempUnit);
+		Utils.cToU(minTemp, tempUnit);
+		Utils.cToU(avgTemp, tempUnit);
+		Utils.pToU(maxPress, pressUnit);
+		Utils.pToU(minPress, pressUnit);
+		Utils.pToU(avgPress, pressUnit);
+	}
+
+	/**
+	 * Number of days between the oldest day in the summaries and today
+	 *
+	 * @return <code>int</code>
+	 *            day number of the oldest day (1 = only today), 0 if there are no days
+	 */
+	int getNumOfDays() {
+		return size == 0 ? 0 : dayNumber[0];
+	}
+}
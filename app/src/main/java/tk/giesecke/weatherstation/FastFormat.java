@@ -0,0 +1,213 @@
+package tk.giesecke.weatherstation;
+
+/**
+ * FastFormat
+ * number formatting into reusable buffers without creating String objects
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class FastFormat {
+
+	/** Powers of ten for the decimals of the fast path */
+	private static final int[] SCALE = {1, 10, 100, 1000};
+	/**
+	 * Limit of the fast path
+	 * Below 2^14 a float has a resolution finer than 0.001, so there is never more than one
+	 * candidate with 3 decimals and the result is the same as the one of Float.toString()
+	 */
+	private static final float FAST_MAX = 16384f;
+	/** Smallest value handled by the fast path (Float.toString switches to E notation below) */
+	private static final float FAST_MIN = 0.001f;
+	/** Powers of ten for fixed-point formatting */
+	private static final long[] FIXED_SCALE = {1L, 10L, 100L, 1000L, 10000L, 100000L};
+	/** Limit of fixed-point formatting, the scaled value must fit into a long */
+	private static final float FIXED_MAX = 1e9f;
+
+	/**
+	 * Write an integer as ASCII digits
+	 *
+	 * @param buf
+	 *            buffer to write to, needs room for 11 characters
+	 * @param pos
+	 *            position to start writing
+	 * @param value
+	 *            value to write
+	 * @return <code>int</code>
+	 *            position after the last written character
+	 */
+	static int appendInt(byte[] buf, int pos, int value) {
+		if (value == Integer.MIN_VALUE) {
+			return appendString(buf, pos, Integer.toString(value));
+		}
+		if (value < 0) {
+			buf[pos++] = '-';
+			value = -value;
+		}
+		/** Number of digits */
+		int digits = 1;
+		for (int rest = value / 10; rest != 0; rest /= 10) {
+			digits++;
+		}
+		/** Position after the last digit */
+		int end = pos + digits;
+		do {
+			buf[--end] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		return pos + digits;
+	}
+
+	/**
+	 * Write a float exactly as Float.toString() would write it
+	 * Values with up to 3 decimals in the range of the measured values are formatted
+	 * directly, everything else falls back to Float.toString()
+	 *
+	 * @param buf
+	 *            buffer to write to, needs room for 16 characters
+	 * @param pos
+	 *            position to start writing
+	 * @param value
+	 *            value to write
+	 * @return <code>int</code>
+	 *            position after the last written character
+	 */
+	static int appendFloat(byte[] buf, int pos, float value) {
+		/** Absolute value */
+		float abs = Math.abs(value);
+		if (abs >= FAST_MIN && abs < FAST_MAX) {
+			for (int decimals = 1; decimals <= 3; decimals++) {
+				/** Value scaled to an integer */
+				int scaled = (int) Math.round((double) abs * SCALE[decimals]);
+				// Shortest number of decimals that gives back the same float
+				if ((float) ((double) scaled / SCALE[decimals]) == abs) {
+					if (value < 0) {
+						buf[pos++] = '-';
+					}
+					pos = appendInt(buf, pos, scaled / SCALE[decimals]);
+					buf[pos++] = '.';
+					/** Decimals as integer */
+					int fraction = scaled % SCALE[decimals];
+					for (int i = decimals - 1; i >= 0; i--) {
+						buf[pos++] = (byte) ('0' + fraction / SCALE[i] % 10);
+					}
+					return pos;
+				}
+			}
+		}
+		return appendString(buf, pos, Float.toString(value));
+	}
+
+	/**
+	 * Write an ASCII string
+	 *
+	 * @param buf
+	 *            buffer to write to
+	 * @param pos
+	 *            position to start writing
+	 * @param text
+	 *            text to write, only ASCII characters
+	 * @return <code>int</code>
+	 *            position after the last written character
+	 */
+	static int appendString(byte[] buf, int pos, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			buf[pos++] = (byte) text.charAt(i);
+		}
+		return pos;
+	}
+
+	/**
+	 * Write a float with a fixed number of decimals exactly as String.format("%.nf") would
+	 * write it, rounded half up from the exact value of the float
+	 * Digits and decimal separator are passed in, so the caller can cache them for the locale
+	 *
+	 * @param buf
+	 *            buffer to write to, needs room for 46 characters (Float.MAX_VALUE with 5 decimals)
+	 * @param pos
+	 *            position to start writing
+	 * @param value
+	 *            value to write
+	 * @param decimals
+	 *            number of decimals, 0 to 5
+	 * @param decimalSeparator
+	 *            decimal separator of the locale
+	 * @param zeroDigit
+	 *            digit zero of the locale
+	 * @return <code>int</code>
+	 *            position after the last written character
+	 */
+	static int appendFixed(char[] buf, int pos, float value, int decimals,
+	                       char decimalSeparator, char zeroDigit) {
+		if (Float.isNaN(value) || Math.abs(value) >= FIXED_MAX) {
+			return appendString(buf, pos, String.format("%." + decimals + "f", value));
+		}
+		/** Bits of the float */
+		int bits = Float.floatToRawIntBits(value);
+		/** Biased binary exponent */
+		int exponent = (bits >> 23) & 0xff;
+		/** Mantissa including the implicit leading bit */
+		long mantissa = exponent == 0 ? (bits & 0x7fffff) << 1 : (bits & 0x7fffff) | 0x800000;
+		// value = mantissa * 2^shift, the scaled value is calculated exactly
+		/** Binary exponent of the mantissa */
+		int shift = exponent - 150;
+		/** Value with the requested decimals as integer */
+		long scaled = mantissa * FIXED_SCALE[decimals];
+		if (shift >= 0) {
+			scaled <<= shift;
+		} else if (shift < -62) {
+			scaled = 0;
+		} else {
+			/** Part that is cut off */
+			long rest = scaled & ((1L << -shift) - 1);
+			scaled >>= -shift;
+			if (rest >= 1L << (-shift - 1)) { // half up
+				scaled++;
+			}
+		}
+		// The sign is kept even if the value is rounded to zero, same as String.format
+		if (bits < 0) {
+			buf[pos++] = '-';
+		}
+		/** Integer part */
+		long integer = scaled / FIXED_SCALE[decimals];
+		/** Number of digits of the integer part */
+		int digits = 1;
+		for (long rest = integer / 10; rest != 0; rest /= 10) {
+			digits++;
+		}
+		for (int i = pos + digits - 1; i >= pos; i--) {
+			buf[i] = (char) (zeroDigit + (int) (integer % 10));
+			integer /= 10;
+		}
+		pos += digits;
+		if (decimals != 0) {
+			buf[pos++] = decimalSeparator;
+			/** Decimals as integer */
+			long fraction = scaled % FIXED_SCALE[decimals];
+			for (int i = decimals - 1; i >= 0; i--) {
+				buf[pos++] = (char) (zeroDigit + (int) (fraction / FIXED_SCALE[i] % 10));
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Write a string
+	 *
+	 * @param buf
+	 *            buffer to write to
+	 * @param pos
+	 *            position to start writing
+	 * @param text
+	 *            text to write
+	 * @return <code>int</code>
+	 *            position after the last written character
+	 */
+	static int appendString(char[] buf, int pos, String text) {
+		/** Length of the text */
+		int length = text.length();
+		text.getChars(0, length, buf, pos);
+		return pos + length;
+	}
+}
@@ -0,0 +1,298 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * HistoryCache
+ * keeps all stored samples of the recorded days in memory for the whole process
+ * used by the day view
+ * the samples are read once from the database into primitive arrays, oldest first,
+ * new samples written by the background service are appended,
+ * restore, clean and the daily rollover drop the cache so it is read again when needed
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class HistoryCache {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Cache";
+
+	/** Room for one month of hourly samples */
+	private static final int INITIAL_CAPACITY = WSDatabaseHelper.DAYS_TO_KEEP * 24;
+
+	/** Flag if the samples are in memory */
+	private static boolean isLoaded = false;
+	/** Number of cached samples */
+	private static int size = 0;
+	/** Epoch day of each sample */
+	private static int[] epochDay = new int[0];
+	/** Day of the month of each sample */
+	private static int[] dayStamp = new int[0];
+	/** Hour of each sample */
+	private static int[] hour = new int[0];
+	/** Temperature of each sample, Float.NaN if there is no value */
+	private static float[] temp = new float[0];
+	/** Pressure of each sample, Float.NaN if there is no value */
+	private static float[] press = new float[0];
+	/** Humidity of each sample, Float.NaN if there is no value */
+	private static float[] humid = new float[0];
+
+	/** Incremented whenever the stored samples change, even if they are not cached */
+	private static int generation = 0;
+	/** Incremented whenever the stored samples are replaced or removed */
+	private static int resets = 0;
+
+	/** Number of day view requests answered from memory */
+	private static int hits = 0;
+	/** Number of day view requests that had to read the database */
+	private static int misses = 0;
+
+	/**
+	 * Get the samples of a day
+	 *
+	 * @param context
+	 *            any context of the app, used if the cache must be read from the database
+	 * @param dayNumber
+	 *            the day we want (1 = today, 2 = yesterday, ...)
+	 * @return <code>DaySamples</code>
+	 *            samples of the day in database units, ordered by hour
+	 */
+	static synchronized DaySamples getDay(Context context, int dayNumber) {
+		load(context);
+		/** Epoch day of the requested day */
+		int day = Utils.getToday() + 1 - dayNumber;
+		/** First sample of the day */
+		int first = 0;
+		while (first < size && epochDay[first] < day) {
+			first++;
+		}
+		/** Sample after the last sample of the day */
+		int last = first;
+		while (last < size && epochDay[last] == day) {
+			last++;
+		}
+		/** Samples of the day */
+		DaySamples samples = new DaySamples(last - first);
+		if (samples.size != 0) {
+			samples.dayStamp = dayStamp[first];
+			System.arraycopy(hour, first, samples.hour, 0, samples.size);
+			System.arraycopy(temp, first, samples.temp, 0, samples.size);
+			System.arraycopy(press, first, samples.press, 0, samples.size);
+			System.arraycopy(humid, first, samples.humid, 0, samples.size);
+		}
+		return samples;
+	}
+
+	/**
+	 * Get the number of days between the oldest cached sample and today
+	 *
+	 * @param context
+	 *            any context of the app, used if the cache must be read from the database
+	 * @return <code>int</code>
+	 *            number of recorded days (1 = only today), 0 if there are no samples
+	 */
+	static synchronized int getNumOfDays(Context context) {
+		load(context);
+		return size == 0 ? 0 : Utils.getToday() + 1 - epochDay[0];
+	}
+
+	/**
+	 * Add a sample that was written to the database
+	 * Only changes the version if the cache is not loaded, the sample is read together
+	 * with the others
+	 *
+	 * @param timeStamp
+	 *            hour of measurement
+	 * @param day
+	 *            day of measurement
+	 * @param epoch
+	 *            day of measurement as days since 1970-01-01 (local time)
+	 * @param currTemp
+	 *            measured temperature
+	 * @param currPress
+	 *            measured pressure
+	 * @param currHumid
+	 *            measured humidity
+	 */
+	static synchronized void addSample(int timeStamp, int day, int epoch,
+	                                   float currTemp, float currPress, float currHumid) {
+		if (!isLoaded) {
+			generation++;
+			return;
+		}
+		if (size != 0) {
+			if (epochDay[size - 1] == epoch && hour[size - 1] == timeStamp) {
+				return; // the database ignores a second sample for the same hour as well
+			}
+			if (epochDay[size - 1] > epoch || (epochDay[size - 1] == epoch && hour[size - 1] > timeStamp)) {
+				// Not the newest sample, easier to read everything again than to sort it in
+				invalidate();
+				return;
+			}
+		}
+		if (size == epochDay.length) {
+			grow(Math.max(INITIAL_CAPACITY, 2 * size));
+		}
+		epochDay[size] = epoch;
+		dayStamp[size] = day;
+		hour[size] = timeStamp;
+		temp[size] = currTemp;
+		press[size] = currPress;
+		humid[size] = currHumid;
+		size++;
+		generation++;
+	}
+
+	/**
+	 * Drop the cached samples
+	 * Must be called whenever the database was changed other than by adding a new sample
+	 */
+	static synchronized void invalidate() {
+		isLoaded = false;
+		generation++;
+		resets++;
+		size = 0;
+		epochDay = new int[0];
+		dayStamp = new int[0];
+		hour = new int[0];
+		temp = new float[0];
+		press = new float[0];
+		humid = new float[0];
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Cache invalidated");
+	}
+
+	/**
+	 * Version of the stored samples
+	 * Anything calculated from the samples is outdated if the version changed
+	 *
+	 * @return <code>int</code>
+	 *            number of changes of the stored samples
+	 */
+	static synchronized int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Number of times the stored samples were replaced or removed
+	 * Values that were added up from the samples must start again if this changed
+	 *
+	 * @return <code>int</code>
+	 *            number of restores, cleans, rollovers, ...
+	 */
+	static synchronized int getResets() {
+		return resets;
+	}
+
+	/**
+	 * Number of day view requests answered from memory
+	 *
+	 * @return <code>int</code>
+	 *            cache hits
+	 */
+	static synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of day view requests that had to read the database
+	 *
+	 * @return <code>int</code>
+	 *            cache misses
+	 */
+	static synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Read all samples from the database if they are not in memory yet
+	 *
+	 * @param context
+	 *            any context of the app
+	 */
+	private static void load(Context context) {
+		if (isLoaded) {
+			hits++;
+			return;
+		}
+		misses++;
+		/** Start time of the load for debug output */
+		long startTime = System.nanoTime();
+		/** Access to weather db */
+		SQLiteDatabase db = DatabaseManager.open(context);
+		try {
+			/** Cursor with all samples, oldest first */
+			Cursor allRows = DatabaseManager.getHelper().getAll(db);
+			size = 0;
+			grow(Math.max(INITIAL_CAPACITY, allRows.getCount()));
+			while (allRows.moveToNext()) {
+				hour[size] = allRows.getInt(0);
+				dayStamp[size] = allRows.getInt(1);
+				temp[size] = WSDatabaseHelper.getValue(allRows, 3);
+				press[size] = WSDatabaseHelper.getValue(allRows, 4);
+				humid[size] = WSDatabaseHelper.getValue(allRows, 5);
+				epochDay[size] = allRows.getInt(6);
+				size++;
+			}
+			allRows.close();
+			isLoaded = true;
+		} finally {
+			DatabaseManager.release();
+		}
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Loaded " + size + " samples in " +
+				((System.nanoTime() - startTime) / 1000) + " us, " + hits + " hits, " + misses + " misses");
+	}
+
+	/**
+	 * Enlarge the arrays, the cached samples are kept
+	 *
+	 * @param capacity
+	 *            new number of samples the arrays can hold
+	 */
+	private static void grow(int capacity) {
+		epochDay = copyOf(epochDay, capacity);
+		dayStamp = copyOf(dayStamp, capacity);
+		hour = copyOf(hour, capacity);
+		temp = copyOf(temp, capacity);
+		press = copyOf(press, capacity);
+		humid = copyOf(humid, capacity);
+	}
+
+	/**
+	 * Copy the cached part of an array into a new array
+	 *
+	 * @param values
+	 *            array to copy
+	 * @param capacity
+	 *            length of the new array
+	 * @return <code>int[]</code>
+	 *            new array with the cached values
+	 */
+	private static int[] copyOf(int[] values, int capacity) {
+		/** New array */
+		int[] copy = new int[capacity];
+		System.arraycopy(values, 0, copy, 0, size);
+		return copy;
+	}
+
+	/**
+	 * Copy the cached part of an array into a new array
+	 *
+	 * @param values
+	 *            array to copy
+	 * @param capacity
+	 *            length of the new array
+	 * @return <code>float[]</code>
+	 *            new array with the cached values
+	 */
+	private static float[] copyOf(float[] values, int capacity) {
+		/** New array */
+		float[] copy = new float[capacity];
+		System.arraycopy(values, 0, copy, 0, size);
+		return copy;
+	}
+
+}
@@ -0,0 +1,99 @@
+package tk.giesecke.weatherstation;
+
+import android.widget.TextView;
+
+import java.text.DecimalFormatSymbols;
+
+/**
+ * ReadingText
+ * shows a measured value with unit and tendency in a text view
+ * the text is formatted into reused char buffers and handed to the view only if
+ * the shown characters change, so a live update does not create any objects
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class ReadingText {
+
+	/** Initial size of the text buffers */
+	private static final int BUFFER_SIZE = 48;
+	/** Maximum length of a formatted number, Float.MAX_VALUE with 5 decimals */
+	private static final int MAX_NUMBER_LENGTH = 46;
+
+	/** View that shows the text */
+	private final TextView view;
+	/** Decimal separator of the locale, same as used by String.format() */
+	private final char decimalSeparator;
+	/** Digit zero of the locale, same as used by String.format() */
+	private final char zeroDigit;
+	/** Buffer with the shown text, the view keeps a reference to it */
+	private char[] shown = new char[BUFFER_SIZE];
+	/** Buffer for the next text */
+	private char[] next = new char[BUFFER_SIZE];
+	/** Length of the shown text, -1 if nothing was shown yet */
+	private int shownLength = -1;
+
+	/**
+	 * Create a text holder for a view
+	 *
+	 * @param view
+	 *            view that shows the text
+	 */
+	ReadingText(TextView view) {
+		this.view = view;
+		/** Number symbols of the default locale */
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+		decimalSeparator = symbols.getDecimalSeparator();
+		zeroDigit = symbols.getZeroDigit();
+	}
+
+	/**
+	 * Show a value
+	 *
+	 * @param value
+	 *            value to show
+	 * @param decimals
+	 *            number of decimals
+	 * @param unit
+	 *            unit shown behind the value
+	 * @param tendency
+	 *            tendency shown behind the unit, empty if none
+	 */
+	void show(float value, int decimals, String unit, String tendency) {
+		/** Length the new text can have at most */
+		int maxLength = MAX_NUMBER_LENGTH + unit.length() + tendency.length();
+		if (next.length < maxLength) {
+			next = new char[maxLength];
+		}
+		/** Length of the new text */
+		int length = FastFormat.appendFixed(next, 0, value, decimals, decimalSeparator, zeroDigit);
+		length = FastFormat.appendString(next, length, unit);
+		length = FastFormat.appendString(next, length, tendency);
+		if (length == shownLength && isShown(length)) {
+			return;
+		}
+		view.setText(next, 0, length);
+		/** Old buffer, the view does not use it anymore */
+		char[] free = shown;
+		shown = next;
+		next = free;
+		shownLength = length;
+	}
+
+	/**
+	 * Compare the new text with the shown text
+	 *
+	 * @param length
+	 *            length of both texts
+	 * @return <code>boolean</code>
+	 *            true if the texts are the same
+	 */
+	private boolean isShown(int length) {
+		for (int i = 0; i < length; i++) {
+			if (next[i] != shown[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,217 @@
+package tk.giesecke.weatherstation;
+
+import android.view.Choreographer;
+import android.widget.TextView;
+
+/**
+ * RenderScheduler
+ * decouples the sensor events from the drawing of the UI
+ * sensor events only store their values and ask for a frame, the gauges are updated
+ * with the latest values at most once per display frame, the text views and charts
+ * not more often than the update rate the user selected
+ * must be used from the UI thread only
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class RenderScheduler implements Choreographer.FrameCallback {
+
+	/**
+	 * Renderer
+	 * pushes the latest sensor values to the views
+	 */
+	interface Renderer {
+		/**
+		 * Update the gauges with the latest values
+		 */
+		void updateGauges();
+
+		/**
+		 * Check if there are new values for all sensors
+		 *
+		 * @return <code>boolean</code>
+		 *            true if the views can be updated
+		 */
+		boolean isReady();
+
+		/**
+		 * Update text views and charts with the latest values
+		 */
+		void render();
+	}
+
+	/** Length of the overlay text with 7 numbers of the longest possible format */
+	private static final int OVERLAY_LENGTH = 72 + 7 * 46;
+
+	/** Choreographer of the UI thread */
+	private final Choreographer choreographer = Choreographer.getInstance();
+	/** Renderer that updates the views */
+	private final Renderer renderer;
+	/** Minimum time between two updates in ms */
+	private int interval;
+	/** Earliest time for the next update (System.nanoTime()) */
+	private long nextRenderTime;
+	/** Flag if a frame callback is posted */
+	private boolean isFramePending;
+	/** Arrival of the newest sample (System.nanoTime()) */
+	private long lastSampleTime;
+	/** Flag if the scheduler is running */
+	private boolean isRunning;
+
+	/** Optional view that shows frame time and latency, only used in debug builds */
+	private TextView overlay;
+	/** Buffers for the text of the overlay, swapped because the view keeps the shown one */
+	private final char[][] overlayText = {new char[OVERLAY_LENGTH], new char[OVERLAY_LENGTH]};
+	/** Time spent in the last update in ns */
+	private long lastRenderTime;
+	/** Longest time spent in an update in ns */
+	private long maxRenderTime;
+	/** Time between the arrival of the newest sample and the update in ns */
+	private long lastLatency;
+	/** Number of sensor events since the last update */
+	private int coalescedSamples;
+	/** UI thread time spent per sensor event in ns, without the updates of the views */
+	private long eventTime;
+	/** Time the subscribers needed on the sensor thread for the last event in ns */
+	private long deliveryTime;
+
+	/**
+	 * Create a scheduler
+	 *
+	 * @param renderer
+	 *            renderer that updates the views
+	 */
+	RenderScheduler(Renderer renderer) {
+		this.renderer = renderer;
+	}
+
+	/**
+	 * Start scheduling updates, the first update is done as soon as values are ready
+	 *
+	 * @param interval
+	 *            minimum time between two updates in ms
+	 */
+	void start(int interval) {
+		this.interval = interval;
+		nextRenderTime = 0;
+		coalescedSamples = 0;
+		isRunning = true;
+	}
+
+	/**
+	 * Stop scheduling updates
+	 */
+	void stop() {
+		isRunning = false;
+		if (isFramePending) {
+			choreographer.removeFrameCallback(this);
+			isFramePending = false;
+		}
+	}
+
+	/**
+	 * Change the minimum time between two updates
+	 *
+	 * @param interval
+	 *            minimum time between two updates in ms
+	 */
+	void setInterval(int interval) {
+		nextRenderTime += (long) (interval - this.interval) * 1000000L;
+		this.interval = interval;
+	}
+
+	/**
+	 * Show frame time and latency in a view
+	 *
+	 * @param overlay
+	 *            view for the statistics
+	 */
+	void setOverlay(TextView overlay) {
+		this.overlay = overlay;
+	}
+
+	/**
+	 * A sensor delivered a new value
+	 * Asks for a frame if none is requested yet
+	 */
+	void sampleArrived() {
+		if (!isRunning) {
+			return;
+		}
+		lastSampleTime = System.nanoTime();
+		coalescedSamples++;
+		if (!isFramePending) {
+			isFramePending = true;
+			choreographer.postFrameCallback(this);
+		}
+	}
+
+	/**
+	 * Sensor events were taken over by the UI thread
+	 * Only used for the statistics, the time on the sensor thread is the work the UI thread
+	 * did per event before the events were delivered on the sensor thread
+	 *
+	 * @param count
+	 *            number of sensor events
+	 * @param nanos
+	 *            UI thread time spent to take them in ns
+	 * @param sensorNanos
+	 *            time all subscribers needed on the sensor thread for the last event in ns
+	 */
+	void samplesTaken(int count, long nanos, long sensorNanos) {
+		eventTime = nanos / count;
+		deliveryTime = sensorNanos;
+	}
+
+	@Override
+	public void doFrame(long frameTimeNanos) {
+		isFramePending = false;
+		if (!isRunning) {
+			return;
+		}
+		/** Start of the update */
+		long startTime = System.nanoTime();
+		renderer.updateGauges();
+		if (startTime < nextRenderTime || !renderer.isReady()) {
+			// Not yet time for the next update or values missing, the next sensor event asks again
+			return;
+		}
+		renderer.render();
+		/** End of the update */
+		long endTime = System.nanoTime();
+		lastRenderTime = endTime - startTime;
+		maxRenderTime = Math.max(maxRenderTime, lastRenderTime);
+		lastLatency = endTime - lastSampleTime;
+		nextRenderTime = startTime + (long) interval * 1000000L;
+		if (overlay != null) {
+			showStatistics();
+		}
+		coalescedSamples = 0;
+	}
+
+	/**
+	 * Show the statistics in the overlay
+	 * Formatted into reused buffers, so the overlay does not add allocations per frame
+	 */
+	private void showStatistics() {
+		/** Buffer for the new text */
+		char[] text = overlayText[0];
+		overlayText[0] = overlayText[1];
+		overlayText[1] = text;
+		/** Length of the text */
+		int length = FastFormat.appendString(text, 0, "frame ");
+		length = FastFormat.appendFixed(text, length, lastRenderTime / 1000000f, 1, '.', '0');
+		length = FastFormat.appendString(text, length, " ms (max ");
+		length = FastFormat.appendFixed(text, length, maxRenderTime / 1000000f, 1, '.', '0');
+		length = FastFormat.appendString(text, length, ")  latency ");
+		length = FastFormat.appendFixed(text, length, lastLatency / 1000000L, 0, '.', '0');
+		length = FastFormat.appendString(text, length, " ms  events ");
+		length = FastFormat.appendFixed(text, length, coalescedSamples, 0, '.', '0');
+		length = FastFormat.appendString(text, length, "  UI ");
+		length = FastFormat.appendFixed(text, length, eventTime / 1000L, 0, '.', '0');
+		length = FastFormat.appendString(text, length, " us/event (sensor thread ");
+		length = FastFormat.appendFixed(text, length, deliveryTime / 1000L, 0, '.', '0');
+		length = FastFormat.appendString(text, length, " us)");
+		overlay.setText(text, 0, length);
+	}
+}
@@ -0,0 +1,158 @@
+package tk.giesecke.weatherstation;
+
+import com.androidplot.xy.XYSeries;
+
+/**
+ * RingBufferSeries
+ * data series for the continuous plots, the last values are kept in a fixed size
+ * primitive ring buffer
+ * the X values are the position in the series, X and Y objects handed to the plot
+ * are created once with the series, so adding a value does not create any objects
+ * min and max of the values are tracked with a sliding window
+ * must be used from the UI thread only
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class RingBufferSeries implements XYSeries {
+
+	/** Title of the series */
+	private final String title;
+	/** Max number of values in the series */
+	private final int capacity;
+	/** X values handed to the plot, position in the series */
+	private final Integer[] xValues;
+	/** Y values handed to the plot, one holder for each slot of the ring buffer */
+	private final SlotValue[] yValues;
+	/** Min and max of the values in the series */
+	private final SlidingMinMax window;
+	/** Slot of the oldest value */
+	private int head;
+	/** Number of values in the series */
+	private int size;
+
+	/**
+	 * SlotValue
+	 * value of one slot of the ring buffer, changed in place when the slot is reused
+	 */
+	private static class SlotValue extends Number {
+		/** Value in the slot */
+		float value;
+
+		@Override
+		public int intValue() {
+			return (int) value;
+		}
+
+		@Override
+		public long longValue() {
+			return (long) value;
+		}
+
+		@Override
+		public float floatValue() {
+			return value;
+		}
+
+		@Override
+		public double doubleValue() {
+			return value;
+		}
+	}
+
+	/**
+	 * Create an empty series
+	 *
+	 * @param title
+	 *            title of the series
+	 * @param capacity
+	 *            max number of values, older values are removed
+	 */
+	RingBufferSeries(String title, int capacity) {
+		this.title = title;
+		this.capacity = capacity;
+		xValues = new Integer[capacity];
+		yValues = new SlotValue[capacity];
+		for (int i = 0; i < capacity; i++) {
+			xValues[i] = i;
+			yValues[i] = new SlotValue();
+		}
+		window = new SlidingMinMax(capacity);
+	}
+
+	/**
+	 * Add a value to the end of the series, the oldest value is removed if the series is full
+	 *
+	 * @param value
+	 *            value to add
+	 */
+	void add(float value) {
+		if (size < capacity) {
+			yValues[(head + size) % capacity].value = value;
+			size++;
+		} else {
+			yValues[head].value = value;
+			head = (head + 1) % capacity;
+		}
+		window.add(value);
+	}
+
+	/**
+	 * Remove all values
+	 */
+	void clear() {
+		head = 0;
+		size = 0;
+		window.reset(capacity);
+	}
+
+	/**
+	 * Max number of values in the series
+	 *
+	 * @return <code>int</code>
+	 *            capacity of the series
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Smallest value in the series
+	 *
+	 * @return <code>float</code>
+	 *            min value, 0 if the series is empty
+	 */
+	float getMin() {
+		return window.getMin();
+	}
+
+	/**
+	 * Largest value in the series
+	 *
+	 * @return <code>float</code>
+	 *            max value, 0 if the series is empty
+	 */
+	float getMax() {
+		return window.getMax();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Number getX(int index) {
+		return xValues[index];
+	}
+
+	@Override
+	public Number getY(int index) {
+		return yValues[(head + index) % capacity];
+	}
+
+	@Override
+	public String getTitle() {
+		return title;
+	}
+}
@@ -0,0 +1,346 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SampleWriter
+ * hands measured samples from the sensor thread to the database
+ * the samples are put into a preallocated ring buffer of primitive records, publishing
+ * a sample does not lock, allocate or touch the database
+ * a single writer thread takes all waiting samples and writes them in one transaction,
+ * a failed transaction keeps the samples in the ring buffer and is tried again later
+ * while export, backup or restore run the writer waits and the samples stay in the ring buffer
+ * only one thread may publish samples (the sensor thread of the SensorHub)
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class SampleWriter {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Writer";
+
+	/** Number of samples the ring buffer can hold, power of 2 */
+	private static final int CAPACITY = 64;
+	/** Number of waiting samples that counts as backpressure */
+	private static final int HIGH_WATER = CAPACITY * 3 / 4;
+	/** Number of times a failed transaction is tried again before the samples are dropped */
+	private static final int MAX_RETRIES = 20;
+	/** Time between two tries in ns */
+	private static final long RETRY_DELAY = 500000000L;
+
+	/** Hour of each sample */
+	private static final int[] hour = new int[CAPACITY];
+	/** Day of the month of each sample */
+	private static final int[] dayStamp = new int[CAPACITY];
+	/** Epoch day of each sample */
+	private static final int[] epochDay = new int[CAPACITY];
+	/** Temperature of each sample */
+	private static final float[] temp = new float[CAPACITY];
+	/** Pressure of each sample */
+	private static final float[] press = new float[CAPACITY];
+	/** Humidity of each sample */
+	private static final float[] humid = new float[CAPACITY];
+	/** Position of the oldest sample that is not written, only changed by the writer thread */
+	private static final AtomicLong head = new AtomicLong();
+	/** Position of the next free record, only changed by the publishing thread */
+	private static final AtomicLong tail = new AtomicLong();
+
+	/** Number of samples written to the database */
+	private static final AtomicLong written = new AtomicLong();
+	/** Number of samples dropped because the ring buffer was full or writing failed */
+	private static final AtomicLong dropped = new AtomicLong();
+	/** Number of samples published while the ring buffer was filled above the high water mark */
+	private static final AtomicLong backpressure = new AtomicLong();
+	/** Number of transactions that failed */
+	private static final AtomicLong failedBatches = new AtomicLong();
+
+	/** Application context to open the database */
+	private static Context appContext = null;
+	/** The writer thread, null until start() is called */
+	private static volatile Thread writerThread = null;
+	/** Tasks to run when all samples are written */
+	private static final ArrayList<Runnable> drainedTasks = new ArrayList<>();
+
+	/** Epoch day the expired days were last removed, only used by the writer thread */
+	private static int lastShiftDay = -1;
+
+	/**
+	 * Start the writer thread
+	 * Must be called once before the first sample is published
+	 *
+	 * @param context
+	 *            any context of the app
+	 */
+	static synchronized void start(Context context) {
+		if (writerThread != null) {
+			return;
+		}
+		appContext = context.getApplicationContext();
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "SampleWriter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Publish a sample, only called by the publishing thread
+	 *
+	 * @param timeStamp
+	 *            hour of measurement
+	 * @param day
+	 *            day of measurement
+	 * @param epoch
+	 *            day of measurement as days since 1970-01-01 (local time)
+	 * @param currTemp
+	 *            measured temperature, Float.NaN if there is no value
+	 * @param currPress
+	 *            measured pressure, Float.NaN if there is no value
+	 * @param currHumid
+	 *            measured humidity, Float.NaN if there is no value
+	 * @return <code>boolean</code>
+	 *            true if the sample is queued, false if it was dropped because the buffer is full
+	 */
+	static boolean publish(int timeStamp, int day, int epoch,
+	                       float currTemp, float currPress, float currHumid) {
+		/** Position for the new sample */
+		long t = tail.get();
+		/** Number of waiting samples */
+		long waiting = t - head.get();
+		if (waiting >= CAPACITY) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		if (waiting >= HIGH_WATER) {
+			backpressure.incrementAndGet();
+		}
+		/** Record of the new sample */
+		int index = (int) (t & (CAPACITY - 1));
+		hour[index] = timeStamp;
+		dayStamp[index] = day;
+		epochDay[index] = epoch;
+		temp[index] = currTemp;
+		press[index] = currPress;
+		humid[index] = currHumid;
+		tail.lazySet(t + 1);
+		LockSupport.unpark(writerThread);
+		return true;
+	}
+
+	/**
+	 * Run a task when all samples published until now are written or dropped
+	 * The task runs on the writer thread
+	 *
+	 * @param task
+	 *            task to run
+	 */
+	static void runWhenDrained(Runnable task) {
+		synchronized (drainedTasks) {
+			drainedTasks.add(task);
+		}
+		LockSupport.unpark(writerThread);
+	}
+
+	/**
+	 * Number of samples waiting to be written
+	 *
+	 * @return <code>int</code>
+	 *            waiting samples
+	 */
+	static int getPending() {
+		return (int) (tail.get() - head.get());
+	}
+
+	/**
+	 * Number of samples written to the database
+	 *
+	 * @return <code>long</code>
+	 *            written samples
+	 */
+	static long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * Number of samples dropped because the buffer was full or writing failed too often
+	 *
+	 * @return <code>long</code>
+	 *            dropped samples
+	 */
+	static long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of samples published while the buffer was filled above the high water mark
+	 *
+	 * @return <code>long</code>
+	 *            samples published under backpressure
+	 */
+	static long getBackpressure() {
+		return backpressure.get();
+	}
+
+	/**
+	 * Number of transactions that failed
+	 *
+	 * @return <code>long</code>
+	 *            failed transactions
+	 */
+	static long getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	/**
+	 * Main loop of the writer thread
+	 * Writes all waiting samples, waits if there are none
+	 */
+	private static void writeLoop() {
+		/** Number of failed tries of the waiting samples */
+		int retries = 0;
+		//noinspection InfiniteLoopStatement
+		while (true) {
+			/** Oldest waiting sample */
+			long first = head.get();
+			/** Position after the newest waiting sample */
+			long last = tail.get();
+			if (first != last) {
+				if (writeExclusive(first, last)) {
+					head.lazySet(last);
+					retries = 0;
+				} else if (++retries > MAX_RETRIES) {
+					if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Dropped " + (last - first) + " samples");
+					dropped.addAndGet(last - first);
+					head.lazySet(last);
+					retries = 0;
+				} else {
+					LockSupport.parkNanos(RETRY_DELAY);
+					continue;
+				}
+			}
+			if (head.get() == tail.get()) {
+				runDrainedTasks();
+				if (head.get() == tail.get()) {
+					LockSupport.park();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write samples when no export, backup or restore is running
+	 *
+	 * @param first
+	 *            position of the first sample
+	 * @param last
+	 *            position after the last sample
+	 * @return <code>boolean</code>
+	 *            true if all samples are written
+	 */
+	private static boolean writeExclusive(long first, long last) {
+		DatabaseManager.beginExclusive();
+		try {
+			return writeBatch(first, last);
+		} finally {
+			DatabaseManager.endExclusive();
+		}
+	}
+
+	/**
+	 * Write samples in one transaction
+	 *
+	 * @param first
+	 *            position of the first sample
+	 * @param last
+	 *            position after the last sample
+	 * @return <code>boolean</code>
+	 *            true if all samples are written
+	 */
+	private static boolean writeBatch(long first, long last) {
+		/** Start time of the transaction for debug output */
+		long startTime = System.nanoTime();
+		/** Access to weather db */
+		SQLiteDatabase dataBase = DatabaseManager.open(appContext);
+		/** Instance of weather db helper */
+		WSDatabaseHelper wsDbHelper = DatabaseManager.getHelper();
+		/** Flag if all samples were written */
+		boolean result = true;
+		/** Flag if the expired days were removed */
+		boolean isShiftDone = false;
+		try {
+			dataBase.beginTransaction();
+			try {
+				for (long i = first; i < last && result; i++) {
+					/** Record of the sample */
+					int index = (int) (i & (CAPACITY - 1));
+					if (hour[index] == 0 && epochDay[index] != lastShiftDay) {
+						// it is 12am or 0h, so we remove expired days before we save the records
+						wsDbHelper.deleteExpiredDays(dataBase);
+						lastShiftDay = epochDay[index];
+						isShiftDone = true;
+					}
+					result = wsDbHelper.addSample(dataBase, hour[index], dayStamp[index], epochDay[index],
+							temp[index], press[index], humid[index]);
+				}
+				if (result) {
+					dataBase.setTransactionSuccessful();
+				}
+			} finally {
+				dataBase.endTransaction();
+			}
+		} catch (SQLException e) {
+			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Writing samples failed " + e.getMessage());
+			result = false;
+		} finally {
+			DatabaseManager.release();
+		}
+		if (!result) {
+			lastShiftDay = -1;
+			failedBatches.incrementAndGet();
+			return false;
+		}
+		if (isShiftDone) {
+			HistoryCache.invalidate();
+		}
+		for (long i = first; i < last; i++) {
+			/** Record of the sample */
+			int index = (int) (i & (CAPACITY - 1));
+			HistoryCache.addSample(hour[index], dayStamp[index], epochDay[index],
+					temp[index], press[index], humid[index]);
+		}
+		written.addAndGet(last - first);
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Wrote " + (last - first) + " samples in " +
+				((System.nanoTime() - startTime) / 1000) + " us, " + dropped.get() + " dropped, " +
+				backpressure.get() + " under backpressure");
+		return true;
+	}
+
+	/**
+	 * Run the tasks that wait for all samples to be written
+	 */
+	private static void runDrainedTasks() {
+		/** Tasks to run */
+		Runnable[] tasks;
+		synchronized (drainedTasks) {
+			if (drainedTasks.isEmpty()) {
+				return;
+			}
+			tasks = drainedTasks.toArray(new Runnable[drainedTasks.size()]);
+			drainedTasks.clear();
+		}
+		for (Runnable task : tasks) {
+			task.run();
+		}
+	}
+}
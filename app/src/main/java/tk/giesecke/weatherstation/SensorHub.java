@@ -0,0 +1,440 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ * SensorHub
+ * one registration of the weather sensors for the whole process
+ * activity, widget service and background service subscribe here instead of
+ * registering their own listeners, the sensors are registered while there is at least
+ * one subscriber, with the sampling period of the subscriber that needs the fastest updates
+ * every sensor event is handed to all subscribers as an immutable snapshot of the
+ * latest values of all sensors
+ * sensor events are delivered on a background thread of the hub, never on the main
+ * thread, subscribers that update views hand the snapshots over to the UI thread
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class SensorHub implements SensorEventListener {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Sensors";
+
+	/**
+	 * Subscriber
+	 * gets the sensor values
+	 */
+	interface Subscriber {
+		/**
+		 * New sensor values arrived
+		 * Called on the sensor thread of the hub
+		 *
+		 * @param reading
+		 *            latest values of all sensors
+		 */
+		void onReading(Reading reading);
+	}
+
+	/**
+	 * Reading
+	 * latest values of all sensors, never changed after creation
+	 */
+	static final class Reading {
+		/** Temperature in °C */
+		final float temp;
+		/** Pressure in hPa */
+		final float press;
+		/** Humidity in % */
+		final float humid;
+		/** Flag if there is a temperature since the sensors were registered */
+		final boolean hasTemp;
+		/** Flag if there is a pressure since the sensors were registered */
+		final boolean hasPress;
+		/** Flag if there is a humidity since the sensors were registered */
+		final boolean hasHumid;
+		/** Flag if all available sensors delivered a value */
+		final boolean isComplete;
+		/** Type of the sensor that delivered a new value, 0 for the snapshot a new subscriber gets */
+		final int sensorType;
+
+		/**
+		 * Create a snapshot
+		 *
+		 * @param hub
+		 *            hub with the latest values
+		 * @param sensorType
+		 *            type of the sensor that delivered a new value, 0 if none
+		 */
+		private Reading(SensorHub hub, int sensorType) {
+			this.sensorType = sensorType;
+			temp = hub.temp;
+			press = hub.press;
+			humid = hub.humid;
+			hasTemp = hub.hasTemp;
+			hasPress = hub.hasPress;
+			hasHumid = hub.hasHumid;
+			isComplete = (hasTemp || hub.tempSensor == null)
+					&& (hasPress || hub.pressSensor == null)
+					&& (hasHumid || hub.humidSensor == null);
+		}
+	}
+
+	/** The hub of the process */
+	private static SensorHub instance = null;
+
+	/** Handler of the sensor thread */
+	private final Handler sensorHandler;
+	/** SensorManager to register the sensors */
+	private final SensorManager sensorManager;
+	/** Access to temp sensor, null if not available */
+	private final Sensor tempSensor;
+	/** Access to pressure sensor, null if not available */
+	private final Sensor pressSensor;
+	/** Access to humidity sensor, null if not available */
+	private final Sensor humidSensor;
+
+	/** Subscribers, replaced by a new array when a subscriber is added or removed */
+	private Subscriber[] subscribers = new Subscriber[0];
+	/** Sampling period in µs each subscriber asked for */
+	private int[] periods = new int[0];
+	/** Sampling period the sensors are registered with, -1 if not registered */
+	private int registeredPeriod = -1;
+
+	/** Latest temperature */
+	private float temp;
+	/** Latest pressure */
+	private float press;
+	/** Latest humidity */
+	private float humid;
+	/** Flag if there is a temperature since the sensors were registered */
+	private boolean hasTemp;
+	/** Flag if there is a pressure since the sensors were registered */
+	private boolean hasPress;
+	/** Flag if there is a humidity since the sensors were registered */
+	private boolean hasHumid;
+	/** Latest snapshot, null if no sensor delivered a value since the sensors were registered */
+	private Reading latest;
+	/**
+	 * Time all subscribers needed for the last event in ns, only measured in debug builds
+	 * Before the sensor thread existed this work was done on the UI thread
+	 */
+	private volatile long deliveryTime;
+
+	/**
+	 * Connect to the sensors
+	 *
+	 * @param context
+	 *            application context
+	 */
+	private SensorHub(Context context) {
+		/** Thread that gets the sensor events */
+		HandlerThread sensorThread = new HandlerThread("SensorHub");
+		sensorThread.start();
+		sensorHandler = new Handler(sensorThread.getLooper());
+		sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+		tempSensor = sensorManager.getDefaultSensor(Sensor.TYPE_AMBIENT_TEMPERATURE);
+		pressSensor = sensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE);
+		humidSensor = sensorManager.getDefaultSensor(Sensor.TYPE_RELATIVE_HUMIDITY);
+	}
+
+	/**
+	 * Get the hub of the process
+	 *
+	 * @param context
+	 *            any context of the app
+	 * @return <code>SensorHub</code>
+	 *            the hub
+	 */
+	static synchronized SensorHub getInstance(Context context) {
+		if (instance == null) {
+			instance = new SensorHub(context.getApplicationContext());
+		}
+		return instance;
+	}
+
+	/**
+	 * Check if a sensor is available
+	 *
+	 * @param sensorType
+	 *            Sensor.TYPE_AMBIENT_TEMPERATURE, Sensor.TYPE_PRESSURE or Sensor.TYPE_RELATIVE_HUMIDITY
+	 * @return <code>boolean</code>
+	 *            true if the device has the sensor
+	 */
+	boolean hasSensor(int sensorType) {
+		switch (sensorType) {
+			case Sensor.TYPE_AMBIENT_TEMPERATURE:
+				return tempSensor != null;
+			case Sensor.TYPE_PRESSURE:
+				return pressSensor != null;
+			case Sensor.TYPE_RELATIVE_HUMIDITY:
+				return humidSensor != null;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Run a task on the sensor thread
+	 * Lets a subscriber handle a timeout on the same thread as its readings
+	 *
+	 * @param task
+	 *            task to run
+	 * @param delay
+	 *            delay in ms
+	 */
+	void postDelayed(Runnable task, long delay) {
+		sensorHandler.postDelayed(task, delay);
+	}
+
+	/**
+	 * Remove a task that was posted with postDelayed() and did not run yet
+	 *
+	 * @param task
+	 *            task to remove
+	 */
+	void removeCallbacks(Runnable task) {
+		sensorHandler.removeCallbacks(task);
+	}
+
+	/**
+	 * Start getting sensor values
+	 * The subscriber gets the latest snapshot right away if the sensors are already running
+	 * May be called from any thread
+	 *
+	 * @param subscriber
+	 *            subscriber to add, a subscriber that is already added only changes its period
+	 * @param delay
+	 *            SensorManager.SENSOR_DELAY_xxx or sampling period in µs
+	 */
+	synchronized void subscribe(final Subscriber subscriber, int delay) {
+		/** Index of the subscriber, -1 if it is new */
+		int index = indexOf(subscriber);
+		if (index < 0) {
+			index = subscribers.length;
+			subscribers = copyOf(subscribers, index + 1);
+			periods = copyOf(periods, index + 1);
+			subscribers[index] = subscriber;
+		}
+		periods[index] = toPeriod(delay);
+		updateRegistration();
+		if (latest != null) {
+			// Deliver on the sensor thread like all other readings
+			sensorHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					/** Snapshot for the new subscriber */
+					Reading current;
+					synchronized (SensorHub.this) {
+						current = indexOf(subscriber) < 0 || latest == null ? null : new Reading(SensorHub.this, 0);
+					}
+					if (current != null) {
+						subscriber.onReading(current);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stop getting sensor values
+	 * The sensors are unregistered when the last subscriber is gone
+	 * May be called from any thread, a reading that is already being delivered
+	 * can still arrive after this call
+	 *
+	 * @param subscriber
+	 *            subscriber to remove
+	 */
+	synchronized void unsubscribe(Subscriber subscriber) {
+		/** Index of the subscriber */
+		int index = indexOf(subscriber);
+		if (index < 0) {
+			return;
+		}
+		/** Subscribers without the removed one */
+		Subscriber[] newSubscribers = new Subscriber[subscribers.length - 1];
+		/** Periods without the removed one */
+		int[] newPeriods = new int[periods.length - 1];
+		System.arraycopy(subscribers, 0, newSubscribers, 0, index);
+		System.arraycopy(subscribers, index + 1, newSubscribers, index, newSubscribers.length - index);
+		System.arraycopy(periods, 0, newPeriods, 0, index);
+		System.arraycopy(periods, index + 1, newPeriods, index, newPeriods.length - index);
+		subscribers = newSubscribers;
+		periods = newPeriods;
+		updateRegistration();
+	}
+
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+	}
+
+	@Override
+	public void onSensorChanged(SensorEvent event) {
+		/** Snapshot for the subscribers */
+		Reading reading;
+		/** Subscribers at the time of the event */
+		Subscriber[] receivers;
+		synchronized (this) {
+			if (registeredPeriod < 0) {
+				return; // event that was queued before the sensors were unregistered
+			}
+			switch (event.sensor.getType()) {
+				case Sensor.TYPE_AMBIENT_TEMPERATURE:
+					temp = event.values[0];
+					hasTemp = true;
+					break;
+				case Sensor.TYPE_PRESSURE:
+					press = event.values[0];
+					hasPress = true;
+					break;
+				case Sensor.TYPE_RELATIVE_HUMIDITY:
+					humid = event.values[0];
+					hasHumid = true;
+					break;
+				default:
+					return;
+			}
+			reading = new Reading(this, event.sensor.getType());
+			latest = reading;
+			receivers = subscribers;
+		}
+		/** Start of the delivery for debug output */
+		long startTime = BuildConfig.DEBUG ? System.nanoTime() : 0;
+		for (Subscriber subscriber : receivers) {
+			subscriber.onReading(reading);
+		}
+		if (BuildConfig.DEBUG) deliveryTime = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Time all subscribers needed for the last sensor event, only measured in debug builds
+	 *
+	 * @return <code>long</code>
+	 *            time in ns spent on the sensor thread
+	 */
+	long getDeliveryTime() {
+		return deliveryTime;
+	}
+
+	/**
+	 * Register or unregister the sensors to match the subscribers
+	 * The sensors are only registered again if the needed period changed
+	 */
+	private void updateRegistration() {
+		if (subscribers.length == 0) {
+			if (registeredPeriod >= 0) {
+				sensorManager.unregisterListener(this);
+				registeredPeriod = -1;
+				// Values of the next registration must not be mixed with old values
+				hasTemp = hasPress = hasHumid = false;
+				latest = null;
+				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Sensors unregistered");
+			}
+			return;
+		}
+		/** Shortest period any subscriber asked for */
+		int period = Integer.MAX_VALUE;
+		for (int subscriberPeriod : periods) {
+			period = Math.min(period, subscriberPeriod);
+		}
+		if (period == registeredPeriod) {
+			return;
+		}
+		if (registeredPeriod >= 0) {
+			sensorManager.unregisterListener(this);
+		}
+		if (tempSensor != null) {
+			sensorManager.registerListener(this, tempSensor, period, sensorHandler);
+		}
+		if (pressSensor != null) {
+			sensorManager.registerListener(this, pressSensor, period, sensorHandler);
+		}
+		if (humidSensor != null) {
+			sensorManager.registerListener(this, humidSensor, period, sensorHandler);
+		}
+		registeredPeriod = period;
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Sensors registered with " + period + " us for "
+				+ subscribers.length + " subscribers");
+	}
+
+	/**
+	 * Find a subscriber
+	 *
+	 * @param subscriber
+	 *            subscriber to find
+	 * @return <code>int</code>
+	 *            index of the subscriber, -1 if not subscribed
+	 */
+	private int indexOf(Subscriber subscriber) {
+		for (int i = 0; i < subscribers.length; i++) {
+			if (subscribers[i] == subscriber) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the sampling period of a delay
+	 *
+	 * @param delay
+	 *            SensorManager.SENSOR_DELAY_xxx or sampling period in µs
+	 * @return <code>int</code>
+	 *            sampling period in µs
+	 */
+	private static int toPeriod(int delay) {
+		switch (delay) {
+			case SensorManager.SENSOR_DELAY_FASTEST:
+				return 0;
+			case SensorManager.SENSOR_DELAY_GAME:
+				return 20000;
+			case SensorManager.SENSOR_DELAY_UI:
+				return 66667;
+			case SensorManager.SENSOR_DELAY_NORMAL:
+				return 200000;
+			default:
+				return delay;
+		}
+	}
+
+	/**
+	 * Copy an array of subscribers into a new array
+	 *
+	 * @param values
+	 *            array to copy
+	 * @param length
+	 *            length of the new array
+	 * @return <code>Subscriber[]</code>
+	 *            new array
+	 */
+	private static Subscriber[] copyOf(Subscriber[] values, int length) {
+		/** New array */
+		Subscriber[] copy = new Subscriber[length];
+		System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+		return copy;
+	}
+
+	/**
+	 * Copy an array of periods into a new array
+	 *
+	 * @param values
+	 *            array to copy
+	 * @param length
+	 *            length of the new array
+	 * @return <code>int[]</code>
+	 *            new array
+	 */
+	private static int[] copyOf(int[] values, int length) {
+		/** New array */
+		int[] copy = new int[length];
+		System.arraycopy(values, 0, copy, 0, Math.min(values.length, length));
+		return copy;
+	}
+}
@@ -0,0 +1,139 @@
+package tk.giesecke.weatherstation;
+
+/**
+ * SlidingMinMax
+ * min and max of the last values added, e.g. the values shown in a continuous plot
+ * the values are kept in a primitive ring buffer, two monotonic deques hold the
+ * candidates for min and max, so adding a value and reading min or max costs
+ * amortized O(1) no matter how large the window is
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class SlidingMinMax {
+
+	/** Number of values in the window */
+	private int capacity;
+	/** Ring buffer with the values of the window */
+	private float[] values;
+	/** Number of values added since the last reset, the sequence number of the next value */
+	private long count;
+
+	/** Sequence numbers of the max candidates, values decreasing from head to tail */
+	private long[] maxQueue;
+	/** Position of the oldest max candidate */
+	private int maxHead;
+	/** Number of max candidates */
+	private int maxSize;
+
+	/** Sequence numbers of the min candidates, values increasing from head to tail */
+	private long[] minQueue;
+	/** Position of the oldest min candidate */
+	private int minHead;
+	/** Number of min candidates */
+	private int minSize;
+
+	/**
+	 * Create an empty window
+	 *
+	 * @param capacity
+	 *            number of values in the window
+	 */
+	SlidingMinMax(int capacity) {
+		reset(capacity);
+	}
+
+	/**
+	 * Remove all values and set the size of the window
+	 * The buffers are only created again if the size changed
+	 *
+	 * @param capacity
+	 *            number of values in the window
+	 */
+	void reset(int capacity) {
+		if (values == null || this.capacity != capacity) {
+			this.capacity = capacity;
+			values = new float[capacity];
+			maxQueue = new long[capacity];
+			minQueue = new long[capacity];
+		}
+		count = 0;
+		maxHead = maxSize = 0;
+		minHead = minSize = 0;
+	}
+
+	/**
+	 * Add a value, the oldest value leaves the window if it is full
+	 *
+	 * @param value
+	 *            value to add
+	 */
+	void add(float value) {
+		/** Sequence number of the new value */
+		long seq = count++;
+		values[(int) (seq % capacity)] = value;
+		/** Oldest sequence number still in the window */
+		long oldest = seq - capacity + 1;
+
+		// Drop candidates that left the window
+		if (maxSize != 0 && maxQueue[maxHead] < oldest) {
+			maxHead = (maxHead + 1) % capacity;
+			maxSize--;
+		}
+		if (minSize != 0 && minQueue[minHead] < oldest) {
+			minHead = (minHead + 1) % capacity;
+			minSize--;
+		}
+		// Drop candidates that can never be the max or min again
+		while (maxSize != 0 && valueAt(maxQueue[(maxHead + maxSize - 1) % capacity]) <= value) {
+			maxSize--;
+		}
+		maxQueue[(maxHead + maxSize++) % capacity] = seq;
+		while (minSize != 0 && valueAt(minQueue[(minHead + minSize - 1) % capacity]) >= value) {
+			minSize--;
+		}
+		minQueue[(minHead + minSize++) % capacity] = seq;
+	}
+
+	/**
+	 * Number of values in the window
+	 *
+	 * @return <code>int</code>
+	 *            number of values
+	 */
+	int size() {
+		return (int) Math.min(count, capacity);
+	}
+
+	/**
+	 * Smallest value in the window
+	 *
+	 * @return <code>float</code>
+	 *            min value, 0 if the window is empty
+	 */
+	float getMin() {
+		return minSize == 0 ? 0 : valueAt(minQueue[minHead]);
+	}
+
+	/**
+	 * Largest value in the window
+	 *
+	 * @return <code>float</code>
+	 *            max value, 0 if the window is empty
+	 */
+	float getMax() {
+		return maxSize == 0 ? 0 : valueAt(maxQueue[maxHead]);
+	}
+
+	/**
+	 * Get a value from the ring buffer
+	 *
+	 * @param seq
+	 *            sequence number of the value, must be in the window
+	 * @return <code>float</code>
+	 *            the value
+	 */
+	private float valueAt(long seq) {
+		return values[(int) (seq % capacity)];
+	}
+}
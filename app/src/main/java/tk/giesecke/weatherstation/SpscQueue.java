@@ -0,0 +1,92 @@
+package tk.giesecke.weatherstation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SpscQueue
+ * bounded queue to hand objects from one thread to one other thread without locking
+ * exactly one thread may call offer() and exactly one thread may call poll(),
+ * the producer only writes the tail and the consumer only writes the head, the
+ * ordered writes of the indices publish the slots to the other thread
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class SpscQueue<E> {
+
+	/** Slots of the queue */
+	private final Object[] buffer;
+	/** Capacity - 1, capacity is a power of 2 */
+	private final int mask;
+	/** Position of the next object to take, only written by the consumer */
+	private final AtomicLong head = new AtomicLong();
+	/** Position of the next free slot, only written by the producer */
+	private final AtomicLong tail = new AtomicLong();
+	/** Number of objects that were rejected because the queue was full */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Create an empty queue
+	 *
+	 * @param capacity
+	 *            max number of objects in the queue, rounded up to a power of 2
+	 */
+	SpscQueue(int capacity) {
+		/** Capacity rounded up to a power of 2 */
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		buffer = new Object[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Add an object, only called by the producer thread
+	 *
+	 * @param e
+	 *            object to add
+	 * @return <code>boolean</code>
+	 *            true if the object was added, false if the queue is full
+	 */
+	boolean offer(E e) {
+		/** Position for the new object */
+		long t = tail.get();
+		if (t - head.get() == buffer.length) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		buffer[(int) (t & mask)] = e;
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Take the oldest object, only called by the consumer thread
+	 *
+	 * @return <code>E</code>
+	 *            oldest object, null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		/** Position of the oldest object */
+		long h = head.get();
+		if (h == tail.get()) {
+			return null;
+		}
+		/** Slot of the oldest object */
+		int index = (int) (h & mask);
+		/** Oldest object */
+		E e = (E) buffer[index];
+		buffer[index] = null;
+		head.lazySet(h + 1);
+		return e;
+	}
+
+	/**
+	 * Number of objects that were rejected because the queue was full
+	 *
+	 * @return <code>long</code>
+	 *            number of dropped objects
+	 */
+	long getDropped() {
+		return dropped.get();
+	}
+}
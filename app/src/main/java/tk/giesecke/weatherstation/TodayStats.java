@@ -0,0 +1,289 @@
+package tk.giesecke.weatherstation;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TodayStats
+ * max and min values of today
+ * seeded from the statistics of today in the database, then updated with every live
+ * reading in memory only, the statistics are read again in the background if the
+ * history changed (new hourly sample, restore, clean) or a new day started
+ * a restore or clean replaces the stored samples, the values of today start again then
+ * values are kept in database units (°C, hPa, %), Float.NaN if there is no value yet
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class TodayStats {
+
+	/** Debug tag */
+	private static final String LOG_TAG = "WeatherStation_Today";
+
+	/** Background thread that reads the statistics of today */
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+	/** Start of the next day (System.currentTimeMillis()), values are reset then */
+	private static long nextMidnight = 0;
+	/** Version of the history the statistics were read from */
+	private static int seededGeneration = -1;
+	/** Number of times the history was replaced when the values of today were started */
+	private static int seededResets = -1;
+	/** Flag if the statistics are read at the moment */
+	private static boolean isSeeding = false;
+
+	/** Max temperature of today */
+	private static float maxTemp = Float.NaN;
+	/** Min temperature of today */
+	private static float minTemp = Float.NaN;
+	/** Max pressure of today */
+	private static float maxPress = Float.NaN;
+	/** Min pressure of today */
+	private static float minPress = Float.NaN;
+	/** Max humidity of today */
+	private static float maxHumid = Float.NaN;
+	/** Min humidity of today */
+	private static float minHumid = Float.NaN;
+
+	/**
+	 * Add a live reading
+	 * Never waits for the database, the statistics of today are merged when they are read
+	 *
+	 * @param context
+	 *            any context of the app, used if the statistics must be read
+	 * @param currTemp
+	 *            measured temperature, Float.NaN if there is no value
+	 * @param currPress
+	 *            measured pressure, Float.NaN if there is no value
+	 * @param currHumid
+	 *            measured humidity, Float.NaN if there is no value
+	 */
+	static synchronized void add(Context context, float currTemp, float currPress, float currHumid) {
+		if (System.currentTimeMillis() >= nextMidnight) {
+			// New day, start again with the statistics of today
+			clear();
+			nextMidnight = getNextMidnight();
+			seededGeneration = -1;
+		}
+		if (seededResets != HistoryCache.getResets()) {
+			// The history was restored or cleaned, the values of today are gone with it
+			clear();
+			seededResets = HistoryCache.getResets();
+			seededGeneration = -1;
+		}
+		if (seededGeneration != HistoryCache.getGeneration()) {
+			// New samples were stored, e.g. while the app was not visible
+			seed(context);
+		}
+		merge(currTemp, currTemp, currPress, currPress, currHumid, currHumid);
+	}
+
+	/**
+	 * Max temperature of today
+	 *
+	 * @return <code>float</code>
+	 *            temperature in °C, Float.NaN if there is no value
+	 */
+	static synchronized float getMaxTemp() {
+		return maxTemp;
+	}
+
+	/**
+	 * Min temperature of today
+	 *
+	 * @return <code>float</code>
+	 *            temperature in °C, Float.NaN if there is no value
+	 */
+	static synchronized float getMinTemp() {
+		return minTemp;
+	}
+
+	/**
+	 * Max pressure of today
+	 *
+	 * @return <code>float</code>
+	 *            pressure in hPa, Float.NaN if there is no value
+	 */
+	static synchronized float getMaxPress() {
+		return maxPress;
+	}
+
+	/**
+	 * Min pressure of today
+	 *
+	 * @return <code>float</code>
+	 *            pressure in hPa, Float.NaN if there is no value
+	 */
+	static synchronized float getMinPress() {
+		return minPress;
+	}
+
+	/**
+	 * Max humidity of today
+	 *
+	 * @return <code>float</code>
+	 *            humidity in %, Float.NaN if there is no value
+	 */
+	static synchronized float getMaxHumid() {
+		return maxHumid;
+	}
+
+	/**
+	 * Min humidity of today
+	 *
+	 * @return <code>float</code>
+	 *            humidity in %, Float.NaN if there is no value
+	 */
+	static synchronized float getMinHumid() {
+		return minHumid;
+	}
+
+	/**
+	 * Read the statistics of today in the background and merge them
+	 * Does nothing if they are read already
+	 *
+	 * @param context
+	 *            any context of the app
+	 */
+	private static void seed(Context context) {
+		if (isSeeding) {
+			return;
+		}
+		isSeeding = true;
+		seededGeneration = HistoryCache.getGeneration();
+		/** Number of times the history was replaced before it is read */
+		final int resets = HistoryCache.getResets();
+		/** Application context, the activity can be gone when the job runs */
+		final Context appContext = context.getApplicationContext();
+		/** Day the statistics are read for */
+		final long seedDay = nextMidnight;
+		worker.execute(new Runnable() {
+			@Override
+			public void run() {
+				/** Summary of today from the statistics table, null if reading failed */
+				DaySummaries today = null;
+				try {
+					/** Access to weather db */
+					SQLiteDatabase db = DatabaseManager.open(appContext);
+					try {
+						today = DatabaseManager.getHelper().readDaySummaries(db, 1);
+					} finally {
+						DatabaseManager.release();
+					}
+				} catch (SQLException e) {
+					if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Reading statistics of today failed " + e.getMessage());
+				}
+				synchronized (TodayStats.class) {
+					isSeeding = false;
+					if (seedDay != nextMidnight || resets != HistoryCache.getResets()) {
+						// A new day started or the history was replaced meanwhile, the values
+						// are outdated, read again with the next reading
+						seededGeneration = -1;
+						return;
+					}
+					if (today != null && today.size != 0 && today.dayNumber[0] == 1) {
+						merge(today.maxTemp[0], today.minTemp[0],
+								today.maxPress[0], today.minPress[0],
+								today.maxHumid[0], today.minHumid[0]);
+					}
+				}
+				if (BuildConfig.DEBUG) Log.d(LOG_TAG, today != null && today.size != 0 ?
+						"Seeded from statistics of today" : "No statistics of today");
+			}
+		});
+	}
+
+	/**
+	 * Remove the values of today
+	 */
+	private static void clear() {
+		maxTemp = minTemp = Float.NaN;
+		maxPress = minPress = Float.NaN;
+		maxHumid = minHumid = Float.NaN;
+	}
+
+	/**
+	 * Merge max and min values into the values of today
+	 * Float.NaN (no value) is skipped, the first value of a sensor is taken as it is
+	 *
+	 * @param highTemp
+	 *            max temperature, Float.NaN if there is no value
+	 * @param lowTemp
+	 *            min temperature, Float.NaN if there is no value
+	 * @param highPress
+	 *            max pressure, Float.NaN if there is no value
+	 * @param lowPress
+	 *            min pressure, Float.NaN if there is no value
+	 * @param highHumid
+	 *            max humidity, Float.NaN if there is no value
+	 * @param lowHumid
+	 *            min humidity, Float.NaN if there is no value
+	 */
+	private static void merge(float highTemp, float lowTemp,
+	                          float highPress, float lowPress,
+	                          float highHumid, float lowHumid) {
+		maxTemp = max(maxTemp, highTemp);
+		minTemp = min(minTemp, lowTemp);
+		maxPress = max(maxPress, highPress);
+		minPress = min(minPress, lowPress);
+		maxHumid = max(maxHumid, highHumid);
+		minHumid = min(minHumid, lowHumid);
+	}
+
+	/**
+	 * Larger of two values, a missing value is ignored
+	 *
+	 * @param current
+	 *            current max, Float.NaN if there is none yet
+	 * @param value
+	 *            new value, Float.NaN if there is no value
+	 * @return <code>float</code>
+	 *            new max, Float.NaN if both are missing
+	 */
+	private static float max(float current, float value) {
+		if (Float.isNaN(current)) {
+			return value;
+		}
+		return Float.isNaN(value) ? current : Math.max(current, value);
+	}
+
+	/**
+	 * Smaller of two values, a missing value is ignored
+	 *
+	 * @param current
+	 *            current min, Float.NaN if there is none yet
+	 * @param value
+	 *            new value, Float.NaN if there is no value
+	 * @return <code>float</code>
+	 *            new min, Float.NaN if both are missing
+	 */
+	private static float min(float current, float value) {
+		if (Float.isNaN(current)) {
+			return value;
+		}
+		return Float.isNaN(value) ? current : Math.min(current, value);
+	}
+
+	/**
+	 * Get the start of the next local day
+	 *
+	 * @return <code>long</code>
+	 *            time in ms (System.currentTimeMillis())
+	 */
+	private static long getNextMidnight() {
+		/** Calendar set to the start of tomorrow */
+		Calendar cal = Calendar.getInstance();
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		cal.add(Calendar.DAY_OF_MONTH, 1);
+		return cal.getTimeInMillis();
+	}
+}
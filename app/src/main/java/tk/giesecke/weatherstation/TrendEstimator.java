@@ -0,0 +1,243 @@
+package tk.giesecke.weatherstation;
+
+/**
+ * TrendEstimator
+ * least-squares trend of the last measured values
+ * the values are kept in a primitive ring buffer, running sums are updated when a
+ * value enters or leaves the window, so adding a value and reading the trend costs O(1)
+ * a trend is only reported if the slope is significant compared to the noise of the values
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+class TrendEstimator {
+
+	/** Values are going up */
+	static final int RISING = 1;
+	/** Values are going down */
+	static final int FALLING = -1;
+	/** No significant change of the values */
+	static final int STEADY = 0;
+
+	/** |t| of the slope needed for a trend, about 95% confidence for the usual window sizes */
+	private static final double T_THRESHOLD = 2.0;
+
+	/** Max number of values in the window */
+	private final int capacity;
+	/** Ring buffer with the values of the window */
+	private final float[] values;
+	/** Slot of the oldest value */
+	private int head;
+	/** Number of values in the window */
+	private int size;
+
+	/** Offset subtracted from the values before summing, keeps the sums small */
+	private double offset;
+	/** Sum of y (y = value - offset) */
+	private double sumY;
+	/** Sum of x * y (x = position in the window, 0 = oldest value) */
+	private double sumXY;
+	/** Sum of y * y */
+	private double sumYY;
+	/** Number of values added since the sums were calculated from the ring buffer */
+	private int updatesSinceRebuild;
+
+	/**
+	 * Create an empty window
+	 *
+	 * @param capacity
+	 *            max number of values, older values leave the window
+	 */
+	TrendEstimator(int capacity) {
+		this.capacity = capacity;
+		values = new float[capacity];
+	}
+
+	/**
+	 * Remove all values
+	 */
+	void reset() {
+		head = size = 0;
+		sumY = sumXY = sumYY = 0;
+		updatesSinceRebuild = 0;
+	}
+
+	/**
+	 * Add a value, the oldest value leaves the window if it is full
+	 *
+	 * @param value
+	 *            value to add
+	 */
+	void add(float value) {
+		if (size == 0) {
+			offset = value;
+		}
+		/** New value relative to the offset */
+		double y = value - offset;
+		if (size < capacity) {
+			values[(head + size) % capacity] = value;
+			sumXY += size * y;
+			sumY += y;
+			sumYY += y * y;
+			size++;
+		} else {
+			/** Oldest value relative to the offset */
+			double oldest = values[head] - offset;
+			values[head] = value;
+			head = (head + 1) % capacity;
+			// All remaining values move one position to the front
+			sumXY += (size - 1) * y - (sumY - oldest);
+			sumY += y - oldest;
+			sumYY += y * y - oldest * oldest;
+		}
+		if (++updatesSinceRebuild >= capacity) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Number of values in the window
+	 *
+	 * @return <code>int</code>
+	 *            number of values
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Newest value in the window
+	 *
+	 * @return <code>float</code>
+	 *            last added value, 0 if the window is empty
+	 */
+	float getLast() {
+		return size == 0 ? 0 : values[(head + size - 1) % capacity];
+	}
+
+	/**
+	 * Slope of the regression line
+	 *
+	 * @return <code>double</code>
+	 *            change of the value per sample, 0 if less than 2 values
+	 */
+	double getSlope() {
+		/** Spread of the positions */
+		double sxx = sxx();
+		return sxx == 0 ? 0 : sxy() / sxx;
+	}
+
+	/**
+	 * Value of the regression line at the oldest value of the window
+	 *
+	 * @return <code>double</code>
+	 *            intercept, 0 if the window is empty
+	 */
+	double getIntercept() {
+		if (size == 0) {
+			return 0;
+		}
+		return offset + (sumY - getSlope() * sumX()) / size;
+	}
+
+	/**
+	 * Slope divided by its standard error
+	 *
+	 * @return <code>double</code>
+	 *            t statistic of the slope, 0 if less than 3 values,
+	 *            infinite if all values are on the regression line
+	 */
+	double getTStatistic() {
+		if (size < 3) {
+			return 0;
+		}
+		/** Spread of the positions */
+		double sxx = sxx();
+		/** Slope of the regression line */
+		double slope = sxy() / sxx;
+		/** Sum of the squared residuals */
+		double sse = Math.max(0, syy() - slope * sxy());
+		if (Math.abs(slope) * (size - 1) < Math.ulp(Math.abs(getLast()))) {
+			// Change over the window is below the resolution of the values
+			return 0;
+		}
+		if (sse == 0) {
+			return slope > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		}
+		return slope / Math.sqrt(sse / (size - 2) / sxx);
+	}
+
+	/**
+	 * Classify the trend of the values
+	 *
+	 * @return <code>int</code>
+	 *            RISING, FALLING or STEADY if the slope is not significant
+	 */
+	int getTrend() {
+		/** t statistic of the slope */
+		double t = getTStatistic();
+		if (t > T_THRESHOLD) {
+			return RISING;
+		} else if (t < -T_THRESHOLD) {
+			return FALLING;
+		}
+		return STEADY;
+	}
+
+	/**
+	 * Calculate the sums again from the ring buffer
+	 * Removes rounding errors of the running sums and moves the offset to the oldest value
+	 */
+	private void rebuild() {
+		updatesSinceRebuild = 0;
+		offset = values[head];
+		sumY = sumXY = sumYY = 0;
+		for (int i = 0; i < size; i++) {
+			/** Value relative to the offset */
+			double y = values[(head + i) % capacity] - offset;
+			sumY += y;
+			sumXY += i * y;
+			sumYY += y * y;
+		}
+	}
+
+	/**
+	 * Sum of the positions 0 ... size-1
+	 *
+	 * @return <code>double</code>
+	 *            sum of x
+	 */
+	private double sumX() {
+		return size * (size - 1) / 2.0;
+	}
+
+	/**
+	 * Centered sum of squares of the positions
+	 *
+	 * @return <code>double</code>
+	 *            sum of (x - mean x)^2
+	 */
+	private double sxx() {
+		return size * ((double) size * size - 1) / 12.0;
+	}
+
+	/**
+	 * Centered sum of products of positions and values
+	 *
+	 * @return <code>double</code>
+	 *            sum of (x - mean x) * (y - mean y)
+	 */
+	private double sxy() {
+		return size == 0 ? 0 : sumXY - sumX() * sumY / size;
+	}
+
+	/**
+	 * Centered sum of squares of the values
+	 *
+	 * @return <code>double</code>
+	 *            sum of (y - mean y)^2
+	 */
+	private double syy() {
+		return size == 0 ? 0 : sumYY - sumY * sumY / size;
+	}
+}
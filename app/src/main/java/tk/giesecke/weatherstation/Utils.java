@@ -6,11 +6,10 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.res.Configuration;
-import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 import android.hardware.Sensor;
 import android.os.Build;
-import android.os.StrictMode;
 import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -27,6 +26,7 @@ import com.androidplot.ui.TextOrientationType;
 import com.androidplot.ui.XLayoutStyle;
 import com.androidplot.ui.YLayoutStyle;
 import com.androidplot.util.PixelUtils;
+import com.androidplot.xy.BoundaryMode;
 import com.androidplot.xy.LineAndPointFormatter;
 import com.androidplot.xy.SimpleXYSeries;
 import com.androidplot.xy.XYPlot;
@@ -34,9 +34,7 @@ import com.androidplot.xy.XYStepMode;
 
 import java.io.File;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -71,6 +69,30 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 		return (float)(centiGrade+273.15); // kelvin
 	}
 
+	/**
+	 * Convert an array of centigrade values into user selected unit
+	 * Same calculation as cToU(float, int), but the unit is checked only once
+	 *
+	 * @param centiGrade
+	 *            temperatures in centigrade, replaced by the converted values
+	 * @param unit
+	 *            User requested temperature unit
+	 */
+	public static void cToU(float[] centiGrade, int unit) {
+		if (unit == 0) { // centigrade
+			return;
+		}
+		if (unit == 1) { // fahrenheit
+			for (int i = 0; i < centiGrade.length; i++) {
+				centiGrade[i] = (float)(centiGrade[i]*1.8)+32;
+			}
+			return;
+		}
+		for (int i = 0; i < centiGrade.length; i++) { // kelvin
+			centiGrade[i] = (float)(centiGrade[i]+273.15);
+		}
+	}
+
 	/**
 	 * Returns user selected temperature unit as string
 	 *
@@ -121,6 +143,43 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 		}
 	}
 
+	/**
+	 * Convert an array of mBar values into user selected unit
+	 * Same calculation as pToU(float, int), but the unit is checked only once
+	 *
+	 * @param mBar
+	 *            pressures in mBar, replaced by the converted values
+	 * @param unit
+	 *            User requested pressure unit
+	 */
+	public static void pToU(float[] mBar, int unit) {
+		/** Conversion factor */
+		double factor;
+		switch (unit) {
+			case 1: // psi
+				factor = 0.01450378911491;
+				break;
+			case 2: // atm
+				factor = 0.000986923266716;
+				break;
+			case 3: // Torr
+			case 6: //mmHg
+				factor = 0.7500616827042;
+				break;
+			case 4: // kPa
+				factor = 0.1;
+				break;
+			case 7: // inHg
+				factor = 0.0295301;
+				break;
+			default: // mBar and hPa
+				return;
+		}
+		for (int i = 0; i < mBar.length; i++) {
+			mBar[i] = (float)(mBar[i]*factor);
+		}
+	}
+
 	/**
 	 * Returns user selected pressure unit as string
 	 *
@@ -153,30 +212,31 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	}
 
 	/**
-	 * Returns formatting factor depending on user selected pressure unit as string
+	 * Returns number of decimals depending on user selected pressure unit
 	 *
 	 * @param unit
 	 *            User requested pressure unit
-	 * @return <code>string</code>
-	 *            formatting factor as string
-	 *            %.02f for mBar, hPa, mmHg
-	 *            %.03f for kPa, Torr
-	 *            %.06f for atm, inHg, psi
+	 * @return <code>int</code>
+	 *            number of decimals
+	 *            2 for mBar, hPa, mmHg
+	 *            3 for kPa, Torr
+	 *            4 for inHg, psi
+	 *            5 for atm
 	 */
-	public static String pressFormatTitle(int unit) {
+	public static int pressDecimals(int unit) {
 		switch (unit) {
 			case 1: // psi
 			case 7: // inHg
-				return "%.04f";
+				return 4;
 			case 2: // atm
-				return "%.05f";
+				return 5;
 			case 3: // Torr
 			case 4: // kPa
-				return "%.03f";
+				return 3;
 			case 5: // hPa
 			case 6: //mmHg
 			default: // mBar
-				return "%.02f";
+				return 2;
 		}
 	}
 
@@ -271,10 +331,11 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	 *            int[0] = hour
 	 *            int[1] = day
 	 *            int[2] = month
+	 *            int[3] = epoch day (days since 1970-01-01 in local time)
 	 */
 	public static int[] getCurrentDate() {
 		/** Integer array for return values */
-		int[] currTime = new int[3];
+		int[] currTime = new int[4];
 		/** Calendar to get current time and date */
 		Calendar cal = Calendar.getInstance();
 
@@ -286,65 +347,44 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 
 		/** Today's month */
 		currTime[2] = cal.get(Calendar.MONTH) + 1;
+
+		/** Today's epoch day */
+		currTime[3] = getEpochDay(cal);
 		return currTime;
 	}
 
 	/**
-	 * Get min and max values of a list
+	 * Get the local epoch day of a calendar
+	 * Used as the absolute day key of the database records
 	 *
-	 * @param continuousSeries
-	 *            0 = tempLevelsSeries
-	 *            1 = pressLevelSeries
-	 *            2 = humidLevelSeries
-	 * @return <code>float[]</code>
-	 *            float[0] = minimum value found
-	 *            float[1] = maximum value found
+	 * @param cal
+	 *            Calendar with the date we want to convert
+	 * @return <code>int</code>
+	 *            Days since 1970-01-01 in local time
 	 */
-	public static float[] getMinMax(int continuousSeries) {
-
-		/** Min and max value of a list */
-		float[] returnMinMax = new float[2];
-		returnMinMax[0] = returnMinMax[1] = 0;
-
-		/** List to hold the values we check for min and max */
-		List<Float> checkedArray = new ArrayList<>();
-
-		/** Flag if the list is empty */
-		boolean isListEmpty = false;
-
-		switch (continuousSeries) {
-			case 0:
-				for (int i=0; i<tempLevelsSeries.size(); i++) {
-					checkedArray.add((float) tempLevelsSeries.getY(i));
-				}
-				break;
-			case 1:
-				for (int i=0; i<pressLevelsSeries.size(); i++) {
-					checkedArray.add((float) pressLevelsSeries.getY(i));
-				}
-				break;
-			case 2:
-				for (int i=0; i<humidLevelsSeries.size(); i++) {
-					checkedArray.add((float) humidLevelsSeries.getY(i));
-				}
-				break;
-		}
-		if (checkedArray.size() == 0) isListEmpty = true;
-
-		if (isListEmpty) {
-			return returnMinMax;
-		}
-		returnMinMax[0] = Collections.min(checkedArray);
-		returnMinMax[1] = Collections.max(checkedArray);
+	public static int getEpochDay(Calendar cal) {
+		/** Local time in milliseconds (UTC time plus time zone and daylight saving offset) */
+		long localMillis = cal.getTimeInMillis() + cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET);
+		return (int) (localMillis / 86400000L);
+	}
 
-		return returnMinMax;
+	/**
+	 * Get today's local epoch day
+	 *
+	 * @return <code>int</code>
+	 *            Days since 1970-01-01 in local time
+	 */
+	public static int getToday() {
+		return getEpochDay(Calendar.getInstance());
 	}
 
 	/**
 	 * Initialize charts for hourly view
+	 * Prepares and attaches the data on the calling thread, only used for the continuous
+	 * view that does not need stored records. Day and month view are loaded by ChartLoader.
 	 *
 	 * @param isContinuous
-	 *            true -> use .useImplicitXVals(); for X values
+	 *            true -> last measured values, position in the series as X values
 	 *            false -> X values
 	 * @param isDay
 	 *            true -> get hourly records
@@ -357,135 +397,187 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	 *            ...
 	 */
 	public static void initCharts(boolean isContinuous, boolean isDay, int day, Activity activity){
+		// A day or month view that is still loading must not replace this view
+		ChartLoader.cancel();
+		attachCharts(prepareCharts(isContinuous, isDay, day, tempUnit, pressUnit), activity);
+	}
 
-		/** String with the X axis name */
-		String xValueLabel = appContext.getString(R.string.currCont);
-		/** List to hold the timestamps */
-		ArrayList<Integer> timeStamps = new ArrayList<>();
-		/** List to hold the day stamps */
-		ArrayList<Integer> dayStamps = new ArrayList<>();
-		/** List to hold the max temperature values */
-		ArrayList<Float> tempMaxEntries = new ArrayList<>();
-		/** List to hold the min temperature values */
-		ArrayList<Float> tempMinEntries = new ArrayList<>();
-		tempMinEntries.clear();
-		/** List to hold the (average) temperature values */
-		ArrayList<Float> tempEntries = new ArrayList<>();
-		/** List to hold the max pressure values */
-		ArrayList<Float> pressMaxEntries = new ArrayList<>();
-		/** List to hold the min pressure values */
-		ArrayList<Float> pressMinEntries = new ArrayList<>();
-		/** List to hold the (average) pressure values */
-		ArrayList<Float> pressEntries = new ArrayList<>();
-		/** List to hold the max humidity values */
-		ArrayList<Float> humidMaxEntries = new ArrayList<>();
-		/** List to hold the min humidity values */
-		ArrayList<Float> humidMinEntries = new ArrayList<>();
-		/** List to hold the (average) humidity values */
-		ArrayList<Float> humidEntries = new ArrayList<>();
-
-		if(!isContinuous) {
-
-			/** Instance of weather db helper */
-			wsDbHelper = new WSDatabaseHelper(appContext);
-			dataBase = wsDbHelper.getReadableDatabase();
-			if (isDay) {
-				xValueLabel = appContext.getString(R.string.currHour);
-				/** Cursor filled with existing entries of today */
-				Cursor dayEntry = wsDbHelper.getDay(dataBase, day);
-				if (dayEntry.getCount() != 0) {
-					dayEntry.moveToFirst();
-
-					for (int i = 0; i<dayEntry.getCount(); i++) {
-						timeStamps.add(dayEntry.getInt(0));
-						dayStamps.add(dayEntry.getInt(1));
-						tempEntries.add(Utils.cToU(dayEntry.getFloat(3), tempUnit));
-						pressEntries.add(Utils.pToU(dayEntry.getFloat(4), pressUnit));
-						humidEntries.add(dayEntry.getFloat(5));
-						dayEntry.moveToNext();
-					}
-				}
-				dayEntry.close();
-
-				numOfDayRecords = 0;
-				for (int i=1; i<32; i++) {
-					/** Cursor filled with existing entries of today */
-					dayEntry = wsDbHelper.getDay(dataBase, i);
-					if (dayEntry.getCount() == 0) {
-						dayEntry.close();
-						break;
-					}
-					dayEntry.moveToFirst();
-					numOfDayRecords++;
-					dayEntry.close();
-				}
+	/**
+	 * Prepare the data for the charts
+	 * Does not touch any view and can run in the background
+	 *
+	 * @param isContinuous
+	 *            true -> no stored records needed
+	 *            false -> read stored records
+	 * @param isDay
+	 *            true -> get hourly records
+	 *            false -> get daily records
+	 * @param day
+	 *            day we want to get the records from (1 = today, 2 = yesterday, ...)
+	 * @param tempUnit
+	 *            user selected temperature unit
+	 * @param pressUnit
+	 *            user selected pressure unit
+	 * @return <code>ChartData</code>
+	 *            converted values and ranges for the charts
+	 */
+	static ChartData prepareCharts(boolean isContinuous, boolean isDay, int day,
+	                               int tempUnit, int pressUnit) {
+		/** Data for the charts */
+		ChartData data = new ChartData();
+		data.isContinuous = isContinuous;
+		data.isDay = isDay;
+		data.xValueLabel = appContext.getString(R.string.currCont);
+		data.tempRangeMin = -100f;
+		data.tempRangeMax = +100f;
+		data.pressRangeMin = Utils.pToU(900f, pressUnit);
+		data.pressRangeMax = Utils.pToU(1100f, pressUnit);
+		data.humidRangeMin = -100f;
+		data.humidRangeMax = +100f;
 
-			} else {
-				xValueLabel = appContext.getString(R.string.currMonth);
-
-				numOfDayRecords = 0;
-				for (int i=1; i<32; i++) {
-					/** Cursor filled with existing entries of today */
-					Cursor dayEntry = wsDbHelper.getDay(dataBase, i);
-					if (dayEntry.getCount() == 0) {
-						dayEntry.close();
-						break;
-					}
-					dayEntry.moveToFirst();
-					numOfDayRecords++;
-					dayEntry.moveToLast();
-					timeStamps.add(dayEntry.getInt(0));
-					dayStamps.add(dayEntry.getInt(2));
-					tempMaxEntries.add(Utils.cToU(dayEntry.getFloat(6), tempUnit));
-					tempMinEntries.add(Utils.cToU(dayEntry.getFloat(7), tempUnit));
-					tempEntries.add(Utils.cToU(dayEntry.getFloat(8), tempUnit));
-					pressMaxEntries.add(Utils.pToU(dayEntry.getFloat(9), pressUnit));
-					pressMinEntries.add(Utils.pToU(dayEntry.getFloat(10), pressUnit));
-					pressEntries.add(Utils.pToU(dayEntry.getFloat(11), pressUnit));
-					humidMaxEntries.add(dayEntry.getFloat(12));
-					humidMinEntries.add(dayEntry.getFloat(13));
-					humidEntries.add(dayEntry.getFloat(14));
-					dayEntry.close();
-				}
-				/** Converter value to change date number (1 => last , last => first) */
-				int converter = 0;
-				for (int i = numOfDayRecords-1; i >= 0; i--) {
-					dayStamps.set(i,dayStamps.get(i)-((numOfDayRecords-1)-(converter*2)));
-					converter++;
-				}
+		if (isContinuous) {
+			return data;
+		}
+
+		if (isDay) {
+			// The samples are read from the database only once and then kept in memory
+			data.xValueLabel = appContext.getString(R.string.currHour);
+			// Converted samples, usually prepared while the neighbouring day was shown
+			/** Samples of the day */
+			DaySamples samples = DayPrefetcher.getDay(appContext, day, tempUnit, pressUnit);
+			data.numOfDays = HistoryCache.getNumOfDays(appContext);
+			DayPrefetcher.prefetchNeighbours(appContext, day, data.numOfDays, tempUnit, pressUnit);
+			data.xValues = samples.hour;
+			data.dayStamp = samples.dayStamp;
+			data.temp = samples.temp;
+			data.press = samples.press;
+			data.humid = samples.humid;
+			if (samples.size != 0) {
+				data.tempRangeMin = minOf(samples.temp, data.tempRangeMin);
+				data.tempRangeMax = maxOf(samples.temp, data.tempRangeMax);
+				data.pressRangeMin = minOf(samples.press, data.pressRangeMin);
+				data.pressRangeMax = maxOf(samples.press, data.pressRangeMax);
+				data.humidRangeMin = minOf(samples.humid, data.humidRangeMin);
+				data.humidRangeMax = maxOf(samples.humid, data.humidRangeMax);
+			}
+			if (BuildConfig.DEBUG) Log.d(WeatherStation.LOG_TAG, "History cache hits = " +
+					HistoryCache.getHits() + " misses = " + HistoryCache.getMisses());
+		} else {
+			data.xValueLabel = appContext.getString(R.string.currMonth);
+			// One row per day from the statistics table, updated with every new sample
+			/** Access to weather db */
+			SQLiteDatabase db = DatabaseManager.open(appContext);
+			/** Summaries of all recorded days */
+			DaySummaries days;
+			try {
+				days = DatabaseManager.getHelper().readDaySummaries(db, WSDatabaseHelper.DAYS_TO_KEEP);
+			} finally {
+				DatabaseManager.release();
+			}
+			data.numOfDays = days.getNumOfDays();
+			// Convert whole columns at once instead of value by value
+			days.convertUnits(tempUnit, pressUnit);
+			data.xValues = new int[days.size];
+			for (int i=0; i<days.size; i++) {
+				// Oldest recorded day is shown as day 1
+				data.xValues[i] = data.numOfDays + 1 - days.dayNumber[i];
+			}
+			data.temp = days.avgTemp;
+			data.maxTemp = days.maxTemp;
+			data.minTemp = days.minTemp;
+			data.press = days.avgPress;
+			data.maxPress = days.maxPress;
+			data.minPress = days.minPress;
+			data.humid = days.avgHumid;
+			data.maxHumid = days.maxHumid;
+			data.minHumid = days.minHumid;
+			if (days.size != 0) {
+				data.tempRangeMin = minOf(days.minTemp, data.tempRangeMin);
+				data.tempRangeMax = maxOf(days.maxTemp, data.tempRangeMax);
+				data.pressRangeMin = minOf(days.minPress, data.pressRangeMin);
+				data.pressRangeMax = maxOf(days.maxPress, data.pressRangeMax);
+				data.humidRangeMin = minOf(days.minHumid, data.humidRangeMin);
+				data.humidRangeMax = maxOf(days.maxHumid, data.humidRangeMax);
 			}
-			dataBase.close();
-			wsDbHelper.close();
 		}
+		return data;
+	}
 
-		// initialize chart for temperature for non-continuous update
+	/**
+	 * Show prepared data in the charts
+	 * Must be called from the UI thread
+	 *
+	 * @param data
+	 *            data prepared by prepareCharts()
+	 * @param activity
+	 *            activity that shows the charts
+	 */
+	static void attachCharts(ChartData data, Activity activity) {
+		if (!data.isContinuous) {
+			numOfDayRecords = data.numOfDays;
+		}
+
+		// initialize chart for temperature
 		if (mTempSensor != null) {
-			initTempChart(isContinuous, isDay, xValueLabel,
-					timeStamps, dayStamps,
-					tempEntries, tempMaxEntries, tempMinEntries, activity);
+			initTempChart(data.isContinuous, data.isDay, data.xValueLabel, data.xValues, data.dayStamp,
+					data.temp, data.maxTemp, data.minTemp, data.tempRangeMin, data.tempRangeMax, activity);
 		}
 
-		// initialize chart for pressure for non-continuous update
+		// initialize chart for pressure
 		if (mPressSensor != null) {
-			initPressChart(isContinuous, isDay, xValueLabel,
-					timeStamps, dayStamps,
-					pressEntries, pressMaxEntries, pressMinEntries, activity);
+			initPressChart(data.isContinuous, data.isDay, data.xValueLabel, data.xValues, data.dayStamp,
+					data.press, data.maxPress, data.minPress, data.pressRangeMin, data.pressRangeMax, activity);
 		}
 
-		// initialize chart for humidity for non-continuous update
+		// initialize chart for humidity
 		if (mHumidSensor != null) {
-			initHumidChart(isContinuous, isDay, xValueLabel,
-					timeStamps, dayStamps,
-					humidEntries, humidMaxEntries, humidMinEntries, activity);
+			initHumidChart(data.isContinuous, data.isDay, data.xValueLabel, data.xValues, data.dayStamp,
+					data.humid, data.maxHumid, data.minHumid, data.humidRangeMin, data.humidRangeMax, activity);
+		}
+	}
+
+	/**
+	 * Smallest value of an array
+	 * Float.NaN (no value) is skipped
+	 *
+	 * @param values
+	 *            array of values
+	 * @param noValue
+	 *            value returned if the array has no value
+	 * @return <code>float</code>
+	 *            smallest value
+	 */
+	private static float minOf(float[] values, float noValue) {
+		/** Smallest value so far, Float.NaN if none yet */
+		float min = Float.NaN;
+		for (float value : values) {
+			if (!Float.isNaN(value) && (Float.isNaN(min) || value < min)) {
+				min = value;
+			}
 		}
+		return Float.isNaN(min) ? noValue : min;
+	}
 
-		// Activate the advertisements
-		// Enable access to internet
-		if (android.os.Build.VERSION.SDK_INT > 9) {
-			/** ThreadPolicy to get permission to access internet */
-			StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.Builder().permitAll().build();
-			StrictMode.setThreadPolicy(policy);
+	/**
+	 * Largest value of an array
+	 * Float.NaN (no value) is skipped
+	 *
+	 * @param values
+	 *            array of values
+	 * @param noValue
+	 *            value returned if the array has no value
+	 * @return <code>float</code>
+	 *            largest value
+	 */
+	private static float maxOf(float[] values, float noValue) {
+		/** Largest value so far, Float.NaN if none yet */
+		float max = Float.NaN;
+		for (float value : values) {
+			if (!Float.isNaN(value) && (Float.isNaN(max) || value > max)) {
+				max = value;
+			}
 		}
+		return Float.isNaN(max) ? noValue : max;
 	}
 
 	/**
@@ -507,51 +599,45 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	 * Initialize temperature chart
 	 *
 	 * @param isContinuous
-	 *            true -> use .useImplicitXVals(); for X values
+	 *            true -> last measured values, position in the series as X values
 	 *            false -> X values
 	 * @param isDay
 	 *            true -> get hourly records
 	 *            false -> get daily records
 	 * @param xValueTitle
 	 *            title for X values as string
-	 * @param timeStamps
-	 *            list with time stamps of existing records
-	 * @param dayStamps
-	 *            list with day stamps of existing records if day view
-	 * @param tempEntries
-	 *            list with temperatures of existing records if day view
-	 *            list with average temperatures if month view
-	 * @param tempMaxEntries
+	 * @param xValues
+	 *            hours of the samples if day view
+	 *            days of the recorded range if month view
+	 * @param dayStamp
+	 *            day of the month if day view
+	 * @param values
+	 *            temperatures of the samples if day view
+	 *            average temperatures if month view
+	 * @param maxValues
 	 *            unused if day view
-	 *            list with max temperatures if month view
-	 * @param tempMinEntries
+	 *            max temperatures if month view
+	 * @param minValues
 	 *            unused if day view
-	 *            list with min temperatures if month view
+	 *            min temperatures if month view
+	 * @param rangeMin
+	 *            lowest temperature shown in the chart
+	 * @param rangeMax
+	 *            highest temperature shown in the chart
 	 */
 	private static void initTempChart(boolean isContinuous, boolean isDay, String xValueTitle,
-	                                  ArrayList<Integer> timeStamps,
-	                                  ArrayList<Integer> dayStamps,
-	                                  ArrayList<Float> tempEntries,
-	                                  ArrayList<Float> tempMaxEntries,
-	                                  ArrayList<Float> tempMinEntries,
+	                                  int[] xValues, int dayStamp,
+	                                  float[] values, float[] maxValues, float[] minValues,
+	                                  float rangeMin, float rangeMax,
 	                                  Activity activity) {
 		// find the temperature levels plot in the layout
 		tempLevelsPlot = (XYPlot) activity.findViewById(R.id.xyTempPlot);
 		// setup and format temperature data series
 		tempLevelsSeries = new SimpleXYSeries(appContext.getString(R.string.currTemp));
 
-		minTempValue = -100f;
-		maxTempValue = +100f;
+		minTempValue = rangeMin;
+		maxTempValue = rangeMax;
 
-		if (!isContinuous && tempEntries.size() != 0) {
-			if (isDay) {
-				minTempValue = Collections.min(tempEntries);
-				maxTempValue = Collections.max(tempEntries);
-			} else {
-				minTempValue = Collections.min(tempMinEntries);
-				maxTempValue = Collections.max(tempMaxEntries);
-			}
-		}
 		tempLevelsPlot.setRangeBottomMax(minTempValue - 0.1);
 		tempLevelsPlot.setRangeBottomMin(minTempValue - 0.1);
 		tempLevelsPlot.setRangeTopMax(maxTempValue + 0.1);
@@ -565,38 +651,44 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 		LineAndPointFormatter tempMinSeriesFormatter;
 
 		if (isContinuous) {
-			tempLevelsSeries.useImplicitXVals();
+			if (tempLiveSeries == null) {
+				tempLiveSeries = new RingBufferSeries(appContext.getString(R.string.currTemp), continuousPlotValues);
+			}
+			tempLiveSeries.clear();
+			// Fixed domain, the line fills the plot from the left and then scrolls
+			tempLevelsPlot.setDomainBoundaries(0, continuousPlotValues - 1, BoundaryMode.FIXED);
 			tempSeriesFormatter = new LineAndPointFormatter(Color.RED, Color.TRANSPARENT, Color.TRANSPARENT, null);
 			tempSeriesFormatter.getLinePaint().setStrokeWidth(10);
-			tempLevelsPlot.addSeries(tempLevelsSeries, tempSeriesFormatter);
+			tempLevelsPlot.addSeries(tempLiveSeries, tempSeriesFormatter);
 		} else {
+			tempLevelsPlot.setDomainBoundaries(0, 0, BoundaryMode.AUTO);
 			if (isDay) {
-				if (dayStamps.size() == 0) {
+				if (values.length == 0) {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.noData);
 				} else {
-					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.hourOfDay) +" "+ Integer.toString(dayStamps.get(0));
-					for (int i=0; i<timeStamps.size(); i++) {
-						tempLevelsSeries.addLast(timeStamps.get(i),tempEntries.get(i));
+					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.hourOfDay) +" "+ Integer.toString(dayStamp);
+					for (int i=0; i<xValues.length; i++) {
+						tempLevelsSeries.addLast(xValues[i], values[i]);
 					}
 				}
 				tempSeriesFormatter = new LineAndPointFormatter(Color.RED, Color.TRANSPARENT, Color.TRANSPARENT, null);
 				tempSeriesFormatter.getLinePaint().setStrokeWidth(10);
 				tempLevelsPlot.addSeries(tempLevelsSeries, tempSeriesFormatter);
 			} else {
-				if (tempEntries.size() == 0) {
+				if (values.length == 0) {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.noData);
 				} else {
-					for (int i=0; i<dayStamps.size(); i++) {
-						tempLevelsSeries.addLast(dayStamps.get(i),tempEntries.get(i));
+					for (int i=0; i<xValues.length; i++) {
+						tempLevelsSeries.addLast(xValues[i], values[i]);
 					}
 				}
 				/** Data series for the max temperature */
 				SimpleXYSeries tempMaxSeries = new SimpleXYSeries(appContext.getString(R.string.currTempMax));
 				/** Data series for the min temperature */
 				SimpleXYSeries tempMinSeries = new SimpleXYSeries(appContext.getString(R.string.currTempMin));
-				for (int i=0; i<timeStamps.size(); i++) {
-					tempMaxSeries.addLast(dayStamps.get(i), tempMaxEntries.get(i));
-					tempMinSeries.addLast(dayStamps.get(i), tempMinEntries.get(i));
+				for (int i=0; i<xValues.length; i++) {
+					tempMaxSeries.addLast(xValues[i], maxValues[i]);
+					tempMinSeries.addLast(xValues[i], minValues[i]);
 				}
 				tempSeriesFormatter = new LineAndPointFormatter(Color.BLACK, Color.TRANSPARENT, Color.TRANSPARENT, null);
 				tempSeriesFormatter.getLinePaint().setStrokeWidth(10);
@@ -672,6 +764,9 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 			}
 		}
 		tempLevelsPlot.removeSeries(tempLevelsSeries);
+		if (tempLiveSeries != null) {
+			tempLevelsPlot.removeSeries(tempLiveSeries);
+		}
 		tempLevelsPlot.removeMarkers();
 		tempLevelsPlot.clear();
 	}
@@ -680,53 +775,47 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	 * Initialize pressure chart
 	 *
 	 * @param isContinuous
-	 *            true -> use .useImplicitXVals(); for X values
+	 *            true -> last measured values, position in the series as X values
 	 *            false -> X values
 	 * @param isDay
 	 *            true -> get hourly records
 	 *            false -> get daily records
 	 * @param xValueTitle
 	 *            title for X values as string
-	 * @param timeStamps
-	 *            list with time stamps of existing records
-	 * @param dayStamps
-	 *            list with day stamps of existing records if day view
-	 * @param pressEntries
-	 *            list with pressures of existing records if day view
-	 *            list with average pressures if month view
-	 * @param pressMaxEntries
+	 * @param xValues
+	 *            hours of the samples if day view
+	 *            days of the recorded range if month view
+	 * @param dayStamp
+	 *            day of the month if day view
+	 * @param values
+	 *            pressures of the samples if day view
+	 *            average pressures if month view
+	 * @param maxValues
 	 *            unused if day view
-	 *            list with max pressures if month view
-	 * @param pressMinEntries
+	 *            max pressures if month view
+	 * @param minValues
 	 *            unused if day view
-	 *            list with min pressures if month view
+	 *            min pressures if month view
+	 * @param rangeMin
+	 *            lowest pressure shown in the chart
+	 * @param rangeMax
+	 *            highest pressure shown in the chart
 	 */
 	private static void initPressChart(boolean isContinuous, boolean isDay, String xValueTitle,
-	                                   ArrayList<Integer> timeStamps,
-	                                   ArrayList<Integer> dayStamps,
-	                                   ArrayList<Float> pressEntries,
-	                                   ArrayList<Float> pressMaxEntries,
-	                                   ArrayList<Float> pressMinEntries,
+	                                   int[] xValues, int dayStamp,
+	                                   float[] values, float[] maxValues, float[] minValues,
+	                                   float rangeMin, float rangeMax,
 	                                   Activity activity) {
 		// find the pressure levels plot in the layout
 		pressLevelsPlot = (XYPlot) activity.findViewById(R.id.xyPressPlot);
 		// setup and format pressure data series
 		pressLevelsSeries = new SimpleXYSeries(appContext.getString(R.string.currPress));
 
-		minPressValue = Utils.pToU(900f, pressUnit);
-		maxPressValue = Utils.pToU(1100f, pressUnit);
+		minPressValue = rangeMin;
+		maxPressValue = rangeMax;
 		/** Padding for top and bottom of the plot depending on user selected unit */
 		float plotPadding = Utils.pressBoundary(pressUnit);
 
-		if (!isContinuous && pressEntries.size() != 0) {
-			if (isDay) {
-				minPressValue = Collections.min(pressEntries);
-				maxPressValue = Collections.max(pressEntries);
-			} else {
-				minPressValue = Collections.min(pressMinEntries);
-				maxPressValue = Collections.max(pressMaxEntries);
-			}
-		}
 		pressLevelsPlot.setRangeBottomMax(minPressValue - plotPadding);
 		pressLevelsPlot.setRangeBottomMin(minPressValue - plotPadding);
 		pressLevelsPlot.setRangeTopMax(maxPressValue + plotPadding);
@@ -740,19 +829,25 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 		LineAndPointFormatter pressMinSeriesFormatter;
 
 		if (isContinuous) {
-			pressLevelsSeries.useImplicitXVals();
+			if (pressLiveSeries == null) {
+				pressLiveSeries = new RingBufferSeries(appContext.getString(R.string.currPress), continuousPlotValues);
+			}
+			pressLiveSeries.clear();
+			// Fixed domain, the line fills the plot from the left and then scrolls
+			pressLevelsPlot.setDomainBoundaries(0, continuousPlotValues - 1, BoundaryMode.FIXED);
 			pressSeriesFormatter = new LineAndPointFormatter(Color.RED, Color.TRANSPARENT, Color.TRANSPARENT, null);
 			pressSeriesFormatter.getLinePaint().setStrokeWidth(10);
-			pressLevelsPlot.addSeries(pressLevelsSeries, pressSeriesFormatter);
+			pressLevelsPlot.addSeries(pressLiveSeries, pressSeriesFormatter);
 		} else {
+			pressLevelsPlot.setDomainBoundaries(0, 0, BoundaryMode.AUTO);
 			if (isDay) {
-				if (dayStamps.size() == 0) {
+				if (values.length == 0) {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.noData);
 				} else {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.hourOfDay) +" "+
-							Integer.toString(dayStamps.get(0));
-					for (int i=0; i<timeStamps.size(); i++) {
-						pressLevelsSeries.addLast(timeStamps.get(i),pressEntries.get(i));
+							Integer.toString(dayStamp);
+					for (int i=0; i<xValues.length; i++) {
+						pressLevelsSeries.addLast(xValues[i], values[i]);
 					}
 				}
 				pressSeriesFormatter = new LineAndPointFormatter(Color.RED, Color.TRANSPARENT,
@@ -760,20 +855,20 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 				pressSeriesFormatter.getLinePaint().setStrokeWidth(10);
 				pressLevelsPlot.addSeries(pressLevelsSeries, pressSeriesFormatter);
 			} else {
-				if (pressEntries.size() == 0) {
+				if (values.length == 0) {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.noData);
 				} else {
-					for (int i=0; i<dayStamps.size(); i++) {
-						pressLevelsSeries.addLast(dayStamps.get(i),pressEntries.get(i));
+					for (int i=0; i<xValues.length; i++) {
+						pressLevelsSeries.addLast(xValues[i], values[i]);
 					}
 				}
 				/** Data series for the max barometric pressure */
 				SimpleXYSeries pressMaxSeries = new SimpleXYSeries(appContext.getString(R.string.currPressMax));
 				/** Data series for the min barometric pressure */
 				SimpleXYSeries pressMinSeries = new SimpleXYSeries(appContext.getString(R.string.currPressMin));
-				for (int i=0; i<timeStamps.size(); i++) {
-					pressMaxSeries.addLast(dayStamps.get(i), pressMaxEntries.get(i));
-					pressMinSeries.addLast(dayStamps.get(i), pressMinEntries.get(i));
+				for (int i=0; i<xValues.length; i++) {
+					pressMaxSeries.addLast(xValues[i], maxValues[i]);
+					pressMinSeries.addLast(xValues[i], minValues[i]);
 				}
 				pressSeriesFormatter = new LineAndPointFormatter(Color.BLACK, Color.TRANSPARENT,
 						Color.TRANSPARENT, null);
@@ -866,6 +961,9 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 			}
 		}
 		pressLevelsPlot.removeSeries(pressLevelsSeries);
+		if (pressLiveSeries != null) {
+			pressLevelsPlot.removeSeries(pressLiveSeries);
+		}
 		pressLevelsPlot.removeMarkers();
 		pressLevelsPlot.clear();
 	}
@@ -874,51 +972,45 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	 * Initialize humidity chart
 	 *
 	 * @param isContinuous
-	 *            true -> use .useImplicitXVals(); for X values
+	 *            true -> last measured values, position in the series as X values
 	 *            false -> X values
 	 * @param isDay
 	 *            true -> get hourly records
 	 *            false -> get daily records
 	 * @param xValueTitle
 	 *            title for X values as string
-	 * @param timeStamps
-	 *            list with time stamps of existing records
-	 * @param dayStamps
-	 *            list with day stamps of existing records if day view
-	 * @param humidEntries
-	 *            list with humidity of existing records if day view
-	 *            list with average humidity if month view
-	 * @param humidMaxEntries
+	 * @param xValues
+	 *            hours of the samples if day view
+	 *            days of the recorded range if month view
+	 * @param dayStamp
+	 *            day of the month if day view
+	 * @param values
+	 *            humidity values of the samples if day view
+	 *            average humidity values if month view
+	 * @param maxValues
 	 *            unused if day view
-	 *            list with max humidity if month view
-	 * @param humidMinEntries
+	 *            max humidity values if month view
+	 * @param minValues
 	 *            unused if day view
-	 *            list with min humidity if month view
+	 *            min humidity values if month view
+	 * @param rangeMin
+	 *            lowest humidity shown in the chart
+	 * @param rangeMax
+	 *            highest humidity shown in the chart
 	 */
 	private static void initHumidChart(boolean isContinuous, boolean isDay, String xValueTitle,
-	                                   ArrayList<Integer> timeStamps,
-	                                   ArrayList<Integer> dayStamps,
-	                                   ArrayList<Float> humidEntries,
-	                                   ArrayList<Float> humidMaxEntries,
-	                                   ArrayList<Float> humidMinEntries,
+	                                   int[] xValues, int dayStamp,
+	                                   float[] values, float[] maxValues, float[] minValues,
+	                                   float rangeMin, float rangeMax,
 	                                   Activity activity) {
 		// find the humidity levels plot in the layout
 		humidLevelsPlot = (XYPlot) activity.findViewById(R.id.xyHumidPlot);
 		// setup and format humidity data series
 		humidLevelsSeries = new SimpleXYSeries(appContext.getString(R.string.currHumid));
 
-		minHumidValue = -100f;
-		maxHumidValue = +100f;
+		minHumidValue = rangeMin;
+		maxHumidValue = rangeMax;
 
-		if (!isContinuous && humidEntries.size() != 0) {
-			if (isDay) {
-				minHumidValue = Collections.min(humidEntries);
-				maxHumidValue = Collections.max(humidEntries);
-			} else {
-				minHumidValue = Collections.min(humidMinEntries);
-				maxHumidValue = Collections.max(humidMaxEntries);
-			}
-		}
 		humidLevelsPlot.setRangeBottomMax(minHumidValue - 0.1);
 		humidLevelsPlot.setRangeBottomMin(minHumidValue - 0.1);
 		humidLevelsPlot.setRangeTopMax(maxHumidValue + 0.1);
@@ -932,38 +1024,44 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 		LineAndPointFormatter humidMinSeriesFormatter;
 
 		if (isContinuous) {
-			humidLevelsSeries.useImplicitXVals();
+			if (humidLiveSeries == null) {
+				humidLiveSeries = new RingBufferSeries(appContext.getString(R.string.currHumid), continuousPlotValues);
+			}
+			humidLiveSeries.clear();
+			// Fixed domain, the line fills the plot from the left and then scrolls
+			humidLevelsPlot.setDomainBoundaries(0, continuousPlotValues - 1, BoundaryMode.FIXED);
 			humidSeriesFormatter = new LineAndPointFormatter(Color.RED, Color.TRANSPARENT, Color.TRANSPARENT, null);
 			humidSeriesFormatter.getLinePaint().setStrokeWidth(10);
-			humidLevelsPlot.addSeries(humidLevelsSeries, humidSeriesFormatter);
+			humidLevelsPlot.addSeries(humidLiveSeries, humidSeriesFormatter);
 		} else {
+			humidLevelsPlot.setDomainBoundaries(0, 0, BoundaryMode.AUTO);
 			if (isDay) {
-				if (dayStamps.size() == 0) {
+				if (values.length == 0) {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.noData);
 				} else {
-					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.hourOfDay) +" "+ Integer.toString(dayStamps.get(0));
-					for (int i=0; i<timeStamps.size(); i++) {
-						humidLevelsSeries.addLast(timeStamps.get(i),humidEntries.get(i));
+					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.hourOfDay) +" "+ Integer.toString(dayStamp);
+					for (int i=0; i<xValues.length; i++) {
+						humidLevelsSeries.addLast(xValues[i], values[i]);
 					}
 				}
 				humidSeriesFormatter = new LineAndPointFormatter(Color.RED, Color.TRANSPARENT, Color.TRANSPARENT, null);
 				humidSeriesFormatter.getLinePaint().setStrokeWidth(10);
 				humidLevelsPlot.addSeries(humidLevelsSeries, humidSeriesFormatter);
 			} else {
-				if (humidEntries.size() == 0) {
+				if (values.length == 0) {
 					xValueTitle = xValueTitle +" "+ appContext.getString(R.string.noData);
 				} else {
-					for (int i=0; i<dayStamps.size(); i++) {
-						humidLevelsSeries.addLast(dayStamps.get(i),humidEntries.get(i));
+					for (int i=0; i<xValues.length; i++) {
+						humidLevelsSeries.addLast(xValues[i], values[i]);
 					}
 				}
 				/** Data series for the max humidity */
 				SimpleXYSeries humidMaxSeries = new SimpleXYSeries(appContext.getString(R.string.currHumidMax));
 				/** Data series for the min humidity */
 				SimpleXYSeries humidMinSeries = new SimpleXYSeries(appContext.getString(R.string.currHumidMin));
-				for (int i=0; i<timeStamps.size(); i++) {
-					humidMaxSeries.addLast(dayStamps.get(i), humidMaxEntries.get(i));
-					humidMinSeries.addLast(dayStamps.get(i), humidMinEntries.get(i));
+				for (int i=0; i<xValues.length; i++) {
+					humidMaxSeries.addLast(xValues[i], maxValues[i]);
+					humidMinSeries.addLast(xValues[i], minValues[i]);
 				}
 				humidSeriesFormatter = new LineAndPointFormatter(Color.BLACK, Color.TRANSPARENT, Color.TRANSPARENT, null);
 				humidSeriesFormatter.getLinePaint().setStrokeWidth(10);
@@ -1047,6 +1145,9 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 			}
 		}
 		humidLevelsPlot.removeSeries(humidLevelsSeries);
+		if (humidLiveSeries != null) {
+			humidLevelsPlot.removeSeries(humidLiveSeries);
+		}
 		humidLevelsPlot.removeMarkers();
 		humidLevelsPlot.clear();
 	}
@@ -1129,13 +1230,7 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 						public void onClick(DialogInterface dialog, int which) {
 							if (isFileSelected) {
 								dialog.dismiss();
-								if (WSDatabaseHelper.restoreDBfromJSON()) {
-									Utils.myAlert(appContext, appContext.getString(R.string.errorRestoreTitle),
-											appContext.getString(R.string.errorRestore));
-								} else {
-									Utils.myAlert(appContext, appContext.getString(R.string.succRestoreTitle),
-											appContext.getString(R.string.succRestore, restoreFilePath));
-								}
+								DatabaseTask.start(appContext, DatabaseTask.RESTORE);
 							} else {
 								Utils.myAlert(appContext, appContext.getString(R.string.errorRestoreTitle),
 										appContext.getString(R.string.noFileSelected));
@@ -1392,58 +1487,17 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	}
 
 	/**
-	 * Get today max and min values from the database and compare with current measurement
-	 * If current measurement is bigger or smaller, use current measurement instead
+	 * Update today max and min values with the current measurement
+	 * The statistics of today are read in the background when the history changed or a new day started
 	 */
 	public static void getTodayMinMax() {
-		wsDbHelper = new WSDatabaseHelper(appContext);
-		dataBase = wsDbHelper.getReadableDatabase();
-		/** Cursor filled with existing entries of today */
-		Cursor dayEntry = wsDbHelper.getDay(dataBase, 1);
-		if (dayEntry.getCount() != 0) {
-			dayEntry.moveToLast();
-			// get min and max values of today
-			if (dayEntry.getFloat(6) >= lastTempValue ) {
-				todayMaxTemp = Utils.cToU(dayEntry.getFloat(6), tempUnit);
-			} else {
-				todayMaxTemp = Utils.cToU(lastTempValue, tempUnit);
-			}
-			if (dayEntry.getFloat(7) <= lastTempValue ) {
-				todayMinTemp = Utils.cToU(dayEntry.getFloat(7), tempUnit);
-			} else {
-				todayMinTemp = Utils.cToU(lastTempValue, tempUnit);
-			}
-			if (dayEntry.getFloat(9) >= lastPressValue ) {
-				todayMaxPress = Utils.cToU(dayEntry.getFloat(9), pressUnit);
-			} else {
-				todayMaxPress = Utils.cToU(lastPressValue, pressUnit);
-			}
-			if (dayEntry.getFloat(10) <= lastPressValue ) {
-				todayMinPress = Utils.cToU(dayEntry.getFloat(10), pressUnit);
-			} else {
-				todayMinPress = Utils.cToU(lastPressValue, pressUnit);
-			}
-			if (dayEntry.getFloat(12) >= lastHumidValue ) {
-				todayMaxHumid = dayEntry.getFloat(12);
-			} else {
-				todayMaxHumid = lastHumidValue;
-			}
-			if (dayEntry.getFloat(13) >= lastHumidValue ) {
-				todayMinHumid = dayEntry.getFloat(13);
-			} else {
-				todayMinHumid = lastHumidValue;
-			}
-		} else {
-			todayMaxTemp = Utils.cToU(lastTempValue, tempUnit);
-			todayMinTemp = Utils.cToU(lastTempValue, tempUnit);
-			todayMaxPress = Utils.cToU(lastPressValue, pressUnit);
-			todayMinPress = Utils.cToU(lastPressValue, pressUnit);
-			todayMaxHumid = lastHumidValue;
-			todayMinHumid = lastHumidValue;
-		}
-		dayEntry.close();
-		dataBase.close();
-		wsDbHelper.close();
+		TodayStats.add(appContext, lastTempValue, lastPressValue, lastHumidValue);
+		todayMaxTemp = Utils.cToU(TodayStats.getMaxTemp(), tempUnit);
+		todayMinTemp = Utils.cToU(TodayStats.getMinTemp(), tempUnit);
+		todayMaxPress = Utils.pToU(TodayStats.getMaxPress(), pressUnit);
+		todayMinPress = Utils.pToU(TodayStats.getMinPress(), pressUnit);
+		todayMaxHumid = TodayStats.getMaxHumid();
+		todayMinHumid = TodayStats.getMinHumid();
 	}
 
 	/**
@@ -1486,39 +1540,17 @@ public class Utils extends WeatherStation implements AdapterView.OnItemClickList
 	}
 
 	/**
-	 * Get date and time and update station view.
-	 * Show forecast icon depending on current air pressure
+	 * Get the tendency symbol for a trend
+	 *
+	 * @param trend
+	 *            TrendEstimator.RISING, TrendEstimator.FALLING or TrendEstimator.STEADY
+	 * @return <code>String</code>
+	 *            tendency symbol
 	 */
-	static String arrayTrend(ArrayList<Float> numArray) {
-		/** Trend as float number */
-		float fTrend;
-		/** Array list needed to calculate trend */
-		ArrayList<Integer> xArray = new ArrayList<>();
-		for (int i=0; i<numArray.size(); i++) {
-			xArray.add(i+1);
-		}
-		ArrayList<Float> xyArray = new ArrayList<>();
-		ArrayList<Integer> x2Array = new ArrayList<>();
-		for (int i = 0; i<numArray.size(); i++) {
-			xyArray.add(xArray.get(i)*numArray.get(i));
-			x2Array.add(xArray.get(i)*xArray.get(i));
-		}
-		float xyArraySum = 0;
-		int xArraySum = 0;
-		float yArraySum = 0;
-		int x2ArraySum = 0;
-		for (int i = 0; i<numArray.size(); i++) {
-			xyArraySum += xyArray.get(i);
-			xArraySum += xArray.get(i);
-			yArraySum += numArray.get(i);
-			x2ArraySum += (x2Array.get(i) * x2Array.get(i));
-		}
-		fTrend = ((numArray.size()*xyArraySum)-(xArraySum*yArraySum)) /
-				((numArray.size()*(float)x2ArraySum)-(xArraySum*xArraySum));
-
-		if (fTrend > 0f) {
+	static String trendText(int trend) {
+		if (trend == TrendEstimator.RISING) {
 			return appContext.getString(R.string.upTendency);
-		} else if (fTrend < 0f) {
+		} else if (trend == TrendEstimator.FALLING) {
 			return appContext.getString(R.string.downTendency);
 		}
 		return appContext.getString(R.string.straightTendency);
@@ -6,20 +6,19 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Environment;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 
 /**
  * WSDatabaseHelper
@@ -33,119 +32,371 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 	/** Debug tag */
 	private static final String LOG_TAG = "WeatherStation_DB";
 	/** Name of the database */
-	private static final String DATABASE_NAME="WSDatabase";
-	/** Name of the table */
-	private static final String TABLE_NAME = "weather";
+	static final String DATABASE_NAME="WSDatabase";
+	/** Name of the table with the samples */
+	static final String TABLE_NAME = "weather";
+	/** Name of the table with the running statistics of every day */
+	static final String STATS_TABLE_NAME = "day_stats";
+	/** Version of the database layout */
+	private static final int DATABASE_VERSION = 6;
+	/** Name of the index on day and hour */
+	static final String INDEX_NAME = "weather_day_hour";
+	/** Number of days we keep in the database */
+	static final int DAYS_TO_KEEP = 31;
+	/** Number of records committed together during a restore */
+	private static final int RESTORE_CHUNK_SIZE = 500;
+	/** Size of the buffer for reading and writing backup files */
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
 	public WSDatabaseHelper(Context context) {
-		super(context, DATABASE_NAME, null, 1);
+		super(context, DATABASE_NAME, null, DATABASE_VERSION);
 	}
 
 	@Override
 	public void onCreate(SQLiteDatabase database) {
 
+		// One row per sample, the max, min and average values of a day are only stored
+		// once per day in the statistics table
 		database.execSQL("CREATE TABLE " + TABLE_NAME + " (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-				"ts INTEGER, ds INTEGER, dn INTEGER, " +
-				"t FLOAT, p FLOAT, h FLOAT," +
-				"mat FLOAT, mit FLOAT, avt FLOAT," +
-				"map FLOAT, mip FLOAT, avp FLOAT," +
-				"mah FLOAT, mih FLOAT, avh FLOAT);");
+				"ed INTEGER, ts INTEGER, t FLOAT, p FLOAT, h FLOAT);");
+		createIndex(database);
+		createStatsTable(database);
+	}
+
+	/**
+	 * Create the table with the running statistics of every day
+	 * One row per day with the number of samples, the number of values, the sums for the
+	 * averages and the min/max values of each sensor, so a new sample can be added without
+	 * reading the whole day
+	 *
+	 * @param database
+	 *            pointer to database
+	 */
+	private void createStatsTable(SQLiteDatabase database) {
+		database.execSQL("CREATE TABLE IF NOT EXISTS " + STATS_TABLE_NAME + " (ed INTEGER PRIMARY KEY, " +
+				"ds INTEGER, lts INTEGER, cnt INTEGER, " +
+				"st REAL, mat FLOAT, mit FLOAT, " +
+				"sp REAL, map FLOAT, mip FLOAT, " +
+				"sh REAL, mah FLOAT, mih FLOAT, " +
+				"ct INTEGER, cp INTEGER, ch INTEGER);");
+	}
+
+	/**
+	 * Calculate the statistics of every day from the stored records
+	 * Needed after the records were replaced, e.g. by a restore
+	 * The day of the month is taken from the epoch day
+	 *
+	 * @param db
+	 *            pointer to database
+	 */
+	public void rebuildDayStats(SQLiteDatabase db) {
+		db.execSQL("DELETE FROM " + STATS_TABLE_NAME);
+		db.execSQL("INSERT INTO " + STATS_TABLE_NAME + " (ed, ds, lts, cnt, " +
+				"st, mat, mit, sp, map, mip, sh, mah, mih, ct, cp, ch) " +
+				"SELECT ed, CAST(strftime('%d', ed * 86400, 'unixepoch') AS INTEGER), " +
+				"MAX(ts), COUNT(*), SUM(t), MAX(t), MIN(t), " +
+				"SUM(p), MAX(p), MIN(p), SUM(h), MAX(h), MIN(h), " +
+				"COUNT(t), COUNT(p), COUNT(h) FROM " + TABLE_NAME + " GROUP BY ed");
+	}
+
+	/**
+	 * Create the index used by all day based queries
+	 * Every read and the rollover delete select by day (and order by hour), so with this index
+	 * none of them has to scan the whole table
+	 *
+	 * @param database
+	 *            pointer to database
+	 */
+	private void createIndex(SQLiteDatabase database) {
+		database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + TABLE_NAME + " (ed, ts);");
 	}
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
 
-		db.execSQL("DROP TABLE IF EXISTS "+ TABLE_NAME);
-		onCreate(db);
+		if (oldVersion < 2) {
+			// Version 1 stored a relative day number (dn = 1 is today) that was renumbered every
+			// midnight. Convert it into the absolute epoch day, keeping all recorded values.
+			/** Today's epoch day */
+			int today = Utils.getToday();
+			// The samples are copied straight into the current layout, the statistics of the
+			// days are calculated below
+			db.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + TABLE_NAME + "_v1");
+			onCreate(db);
+			db.execSQL("INSERT INTO " + TABLE_NAME + " (ed, ts, t, p, h) " +
+					"SELECT " + (today + 1) + "-dn, ts, t, p, h " +
+					"FROM " + TABLE_NAME + "_v1 ORDER BY _id");
+			db.execSQL("DROP TABLE " + TABLE_NAME + "_v1");
+		}
+		if (oldVersion < 3) {
+			createIndex(db);
+		}
+		if (oldVersion < 4) {
+			createStatsTable(db);
+			rebuildDayStats(db);
+		}
+		if (oldVersion >= 2 && oldVersion < 5) {
+			// Up to version 4 every sample carried the max, min and average values of its day.
+			// These are in the statistics table now, only the measured values are kept.
+			// (Version 1 was already converted into this layout above)
+			db.execSQL("DROP INDEX IF EXISTS " + INDEX_NAME);
+			db.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + TABLE_NAME + "_v4");
+			db.execSQL("CREATE TABLE " + TABLE_NAME + " (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+					"ed INTEGER, ts INTEGER, t FLOAT, p FLOAT, h FLOAT);");
+			createIndex(db);
+			db.execSQL("INSERT INTO " + TABLE_NAME + " (ed, ts, t, p, h) " +
+					"SELECT ed, ts, t, p, h FROM " + TABLE_NAME + "_v4 ORDER BY ed, ts");
+			db.execSQL("DROP TABLE " + TABLE_NAME + "_v4");
+		}
+		if (oldVersion >= 4 && oldVersion < 6) {
+			// A sensor without a value is stored as NULL, so the averages need the number of
+			// values of each sensor instead of the number of samples
+			db.execSQL("ALTER TABLE " + STATS_TABLE_NAME + " ADD COLUMN ct INTEGER");
+			db.execSQL("ALTER TABLE " + STATS_TABLE_NAME + " ADD COLUMN cp INTEGER");
+			db.execSQL("ALTER TABLE " + STATS_TABLE_NAME + " ADD COLUMN ch INTEGER");
+			rebuildDayStats(db);
+		}
 	}
 
+	/** Query for the statistics of a day */
+	static final String DAY_STATS_SQL = "SELECT lts, cnt, " +
+			"ct, st, mat, mit, cp, sp, map, mip, ch, sh, mah, mih FROM " +
+			STATS_TABLE_NAME + " WHERE ed=?";
+
 	/**
-	 * Add an entry to the database
+	 * Add a new sample to the database
+	 * The statistics of the day are updated with the new sample and stored together with
+	 * it in one transaction. The cost does not depend on the number of samples the day
+	 * already has.
+	 * A value of a sensor the device does not have is passed as Float.NaN and stored as NULL,
+	 * it is left out of the statistics of the day.
 	 *
 	 * @param db
 	 *            pointer to database
 	 * @param timeStamp
-	 *            hour of measurment
+	 *            hour of measurement
 	 * @param dayStamp
-	 *            day of measurment
-	 * @param dayNumber
-	 *            recorded day (1-31)
+	 *            day of measurement
+	 * @param epochDay
+	 *            recorded day as days since 1970-01-01 (local time)
 	 * @param currTemp
-	 *            measured temperature
+	 *            measured temperature, Float.NaN if there is no value
 	 * @param currPress
-	 *            measured pressure
+	 *            measured pressure, Float.NaN if there is no value
 	 * @param currHumid
-	 *            measured humidity
-	 * @param currMaxTemp
-	 *            max temperature of a day
-	 * @param currMinTemp
-	 *            min temperature of a day
-	 * @param currAvgTemp
-	 *            average temperature of a day
-	 * @param currMaxPress
-	 *            max pressure of a day
-	 * @param currMinPress
-	 *            min pressure of a day
-	 * @param currAvgPress
-	 *            average pressure of a day
-	 * @param currMaxHumid
-	 *            max humidity of a day
-	 * @param currMinHumid
-	 *            min humidity of a day
-	 * @param currAvgHumid
-	 *            average humidity of a day
+	 *            measured humidity, Float.NaN if there is no value
 	 * @return <code>boolean</code>
-	 *            true if addDay was successful
-	 *            false if addDay failed
+	 *            true if the sample was added or there is already a sample for this hour
+	 *            false if adding the sample failed
+	 */
+	public boolean addSample(SQLiteDatabase db, int timeStamp, int dayStamp, int epochDay,
+	                         float currTemp, float currPress, float currHumid) {
+		/** Measured values: temperature, pressure, humidity */
+		float[] sample = {currTemp, currPress, currHumid};
+		/** Sums of the day for temperature, pressure, humidity (for the averages) */
+		double[] sum = new double[3];
+		/** Max values of the day for temperature, pressure, humidity */
+		float[] max = new float[3];
+		/** Min values of the day for temperature, pressure, humidity */
+		float[] min = new float[3];
+		/** Number of values of the day for temperature, pressure, humidity */
+		int[] valueCount = new int[3];
+		/** Number of samples of the day */
+		int count = 0;
+
+		db.beginTransaction();
+		try {
+			/** Cursor with the statistics of the day */
+			Cursor stats = db.rawQuery(DAY_STATS_SQL, new String[]{Integer.toString(epochDay)});
+			if (stats.moveToFirst()) {
+				if (stats.getInt(0) == timeStamp) { // we wrote already a record for this timestamp
+					stats.close();
+					db.setTransactionSuccessful();
+					return true;
+				}
+				count = stats.getInt(1);
+				for (int i = 0; i < 3; i++) {
+					valueCount[i] = stats.getInt(2 + 4 * i);
+					if (valueCount[i] != 0) {
+						sum[i] = stats.getDouble(3 + 4 * i);
+						max[i] = stats.getFloat(4 + 4 * i);
+						min[i] = stats.getFloat(5 + 4 * i);
+					}
+				}
+			}
+			stats.close();
+			count++;
+			for (int i = 0; i < 3; i++) {
+				if (Float.isNaN(sample[i])) {
+					continue;
+				}
+				if (valueCount[i] != 0) {
+					sum[i] += sample[i];
+					max[i] = Math.max(max[i], sample[i]);
+					min[i] = Math.min(min[i], sample[i]);
+				} else {
+					sum[i] = max[i] = min[i] = sample[i];
+				}
+				valueCount[i]++;
+			}
+
+			/** ContentValues to hold the measured values */
+			ContentValues values = new ContentValues(5);
+			values.put("ed", epochDay);
+			values.put("ts", timeStamp);
+			putValue(values, "t", currTemp);
+			putValue(values, "p", currPress);
+			putValue(values, "h", currHumid);
+			if (db.insert(TABLE_NAME, null, values) == -1) {
+				return false;
+			}
+
+			/** ContentValues to hold the new statistics of the day */
+			values = new ContentValues(16);
+			values.put("ed", epochDay);
+			values.put("ds", dayStamp);
+			values.put("lts", timeStamp);
+			values.put("cnt", count);
+			/** Column names of the statistics of temperature, pressure, humidity */
+			String[][] columns = {{"st", "mat", "mit", "ct"}, {"sp", "map", "mip", "cp"}, {"sh", "mah", "mih", "ch"}};
+			for (int i = 0; i < 3; i++) {
+				values.put(columns[i][3], valueCount[i]);
+				if (valueCount[i] != 0) {
+					values.put(columns[i][0], sum[i]);
+					values.put(columns[i][1], max[i]);
+					values.put(columns[i][2], min[i]);
+				} else {
+					values.putNull(columns[i][0]);
+					values.putNull(columns[i][1]);
+					values.putNull(columns[i][2]);
+				}
+			}
+			if (db.replace(STATS_TABLE_NAME, null, values) == -1) {
+				return false;
+			}
+			db.setTransactionSuccessful();
+			return true;
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Put a measured value, NULL if there is no value
+	 *
+	 * @param values
+	 *            values of the record
+	 * @param column
+	 *            name of the column
+	 * @param value
+	 *            measured value, Float.NaN if there is no value
+	 */
+	private static void putValue(ContentValues values, String column, float value) {
+		if (Float.isNaN(value)) {
+			values.putNull(column);
+		} else {
+			values.put(column, value);
+		}
+	}
+
+	/**
+	 * Get a measured value
+	 *
+	 * @param cursor
+	 *            cursor positioned on the record
+	 * @param column
+	 *            index of the column
+	 * @return <code>float</code>
+	 *            measured value, Float.NaN if the column is NULL
 	 */
-	public boolean addDay(SQLiteDatabase db, int timeStamp, int dayStamp, int dayNumber,
-	                   float currTemp, float currPress, float currHumid,
-	                   float currMaxTemp, float currMinTemp, float currAvgTemp,
-	                   float currMaxPress, float currMinPress, float currAvgPress,
-	                   float currMaxHumid, float currMinHumid, float currAvgHumid) {
-
-		/** ContentValues to hold the measured and calculated values to be added to the database */
-		ContentValues values = new ContentValues(14);
-		values.put("ts", timeStamp);
-		values.put("ds", dayStamp);
-		values.put("dn", dayNumber);
-		values.put("t", currTemp);
-		values.put("p", currPress);
-		values.put("h", currHumid);
-		values.put("mat", currMaxTemp);
-		values.put("mit", currMinTemp);
-		values.put("avt", currAvgTemp);
-		values.put("map", currMaxPress);
-		values.put("mip", currMinPress);
-		values.put("avp", currAvgPress);
-		values.put("mah", currMaxHumid);
-		values.put("mih", currMinHumid);
-		values.put("avh", currAvgHumid);
-
-		/** result of database action */
-		long result = db.insert(TABLE_NAME, null, values);
-		return result != -1;
+	static float getValue(Cursor cursor, int column) {
+		return cursor.isNull(column) ? Float.NaN : cursor.getFloat(column);
 	}
 
 	/**
-	 * Read data of day "dayNumber" and returns the data as a cursor
+	 * Read max, min and average values of all days from day "dayNumber" until today
+	 * One row per recorded day, days without records are missing
 	 *
 	 * @param db
 	 *            pointer to database
 	 * @param dayNumber
-	 *            the day we want to read (1-31)
-	 * @return <code>Cursor</code> dayStamp
-	 *            Cursor with all database entries matching with dayNumber
+	 *            the oldest day we want to read (1 = today, 2 = yesterday, ...)
+	 * @return <code>Cursor</code>
+	 *            Cursor with the summaries of the days, oldest day first
+	 *            cursor[0] = time stamp of last sample
+	 *            cursor[1] = date stamp
+	 *            cursor[2] = day number
+	 *            cursor[3] = max temperature
+	 *            cursor[4] = min temperature
+	 *            cursor[5] = average temperature
+	 *            cursor[6] = max pressure
+	 *            cursor[7] = min pressure
+	 *            cursor[8] = average pressure
+	 *            cursor[9] = max humidity
+	 *            cursor[10] = min humidity
+	 *            cursor[11] = average humidity
+	 */
+	public Cursor getDaySummaries(SQLiteDatabase db, int dayNumber) {
+		/** Today's epoch day */
+		int today = Utils.getToday();
+		/** Cursor holding the summaries of the days */
+		return db.rawQuery(summarySql(today, "ed>=?") + " ORDER BY ed",
+				new String[]{Integer.toString(today + 1 - dayNumber)});
+	}
+
+	/**
+	 * Read max, min and average values of all days from day "dayNumber" until today
+	 * One query on the statistics table, the values go straight into primitive arrays
+	 *
+	 * @param db
+	 *            pointer to database
+	 * @param dayNumber
+	 *            the oldest day we want to read (1 = today, 2 = yesterday, ...)
+	 * @return <code>DaySummaries</code>
+	 *            summaries of the recorded days, oldest day first
+	 */
+	public DaySummaries readDaySummaries(SQLiteDatabase db, int dayNumber) {
+		/** Start time of the query for debug output */
+		long startTime = System.nanoTime();
+		/** Cursor holding the summaries of the days */
+		Cursor days = getDaySummaries(db, dayNumber);
+		/** Summaries of the days */
+		DaySummaries summaries = new DaySummaries(days.getCount());
+		for (int i = 0; days.moveToNext(); i++) {
+			summaries.lastHour[i] = days.getInt(0);
+			summaries.dayStamp[i] = days.getInt(1);
+			summaries.dayNumber[i] = days.getInt(2);
+			summaries.maxTemp[i] = getValue(days, 3);
+			summaries.minTemp[i] = getValue(days, 4);
+			summaries.avgTemp[i] = getValue(days, 5);
+			summaries.maxPress[i] = getValue(days, 6);
+			summaries.minPress[i] = getValue(days, 7);
+			summaries.avgPress[i] = getValue(days, 8);
+			summaries.maxHumid[i] = getValue(days, 9);
+			summaries.minHumid[i] = getValue(days, 10);
+			summaries.avgHumid[i] = getValue(days, 11);
+		}
+		days.close();
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Read " + summaries.size + " day summaries in " +
+				((System.nanoTime() - startTime) / 1000) + " us");
+		return summaries;
+	}
+
+	/**
+	 * Query for the summaries of days
+	 * The averages are calculated from the sums and the number of values of each sensor
+	 *
+	 * @param today
+	 *            today's epoch day
+	 * @param where
+	 *            selection of the days with the epoch day as argument
+	 * @return <code>String</code>
+	 *            SQL query with the epoch day as argument
 	 */
-	public Cursor getDay(SQLiteDatabase db, int dayNumber) {
-		/** Cursor holding the records of a day */
-		return db.query(TABLE_NAME,
-				new String[]{"ts", "ds", "dn", "t", "p", "h",
-						"mat", "mit", "avt",
-						"map", "mip", "avp",
-						"mah", "mih", "avh"},
-				"dn=" + dayNumber,
-				null, null, null, null);
+	static String summarySql(int today, String where) {
+		return "SELECT lts, ds, " + (today + 1) + "-ed AS dn, " +
+				"mat, mit, st/ct AS avt, map, mip, sp/cp AS avp, mah, mih, sh/ch AS avh FROM " +
+				STATS_TABLE_NAME + " WHERE " + where;
 	}
 
 	/**
@@ -154,57 +405,82 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 	 * @param db
 	 *            pointer to database
 	 * @return <code>Cursor</code> dayStamp
-	 *            Cursor with all database entries matching with dayNumber
-	 *            Entry per day is
+	 *            Cursor with all samples, ordered by day and hour
+	 *            Entry per sample is
 	 *            cursor[0] = time stamp
 	 *            cursor[1] = date stamp
 	 *            cursor[2] = day number
 	 *            cursor[3] = temperature
 	 *            cursor[4] = pressure
 	 *            cursor[5] = humidity
-	 *            cursor[6] = max temperature
-	 *            cursor[7] = min temperature
-	 *            cursor[8] = average temperature
-	 *            cursor[9] = max pressure
-	 *            cursor[10] = min pressure
-	 *            cursor[11] = average pressure
-	 *            cursor[12] = max humidity
-	 *            cursor[13] = min humidity
-	 *            cursor[14] = average humidity
+	 *            cursor[6] = epoch day
 	 */
 	public Cursor getAll(SQLiteDatabase db) {
 		/** Cursor holding all entries of the database */
-		Cursor allRows = db.rawQuery("select * from " + TABLE_NAME, null);
+		Cursor allRows = db.rawQuery(allSql(Utils.getToday()), null);
 		if (BuildConfig.DEBUG) Log.d("WeatherStation-DB", "Read all Rows Cursor = "+allRows);
 		return allRows;
 	}
 
 	/**
-	 * Makes space for the next day entries and deletes the oldest entry
+	 * Query for all records, ordered by day and hour
+	 *
+	 * @param today
+	 *            today's epoch day
+	 * @return <code>String</code>
+	 *            SQL query without arguments
+	 */
+	static String allSql(int today) {
+		return "SELECT w.ts, s.ds, " + (today + 1) + "-w.ed AS dn, " +
+				"w.t, w.p, w.h, w.ed FROM " + TABLE_NAME + " w LEFT JOIN " + STATS_TABLE_NAME +
+				" s ON s.ed=w.ed ORDER BY w.ed, w.ts";
+	}
+
+	/** Selection of the expired days, the first day we keep is the argument */
+	static final String EXPIRED_WHERE = "ed<?";
+
+	/**
+	 * Deletes all entries that are older than the days we keep
 	 * This way only records of the last 31 days are stored
+	 * As the records are stored with their absolute day this is a single range delete,
+	 * no matter how many records are stored
 	 *
 	 * @param db
 	 *            pointer to database
+	 * @return <code>int</code>
+	 *            number of deleted records
 	 */
-	public void shiftDays(SQLiteDatabase db) {
-		deleteDay(db);
-
-		for (int dayNumber=30; dayNumber>=1; dayNumber--) {
-			/** Content value holding "dn", the value we want to change */
-			ContentValues updateData = new ContentValues();
-			updateData.put("dn", dayNumber + 1);
-			db.update(TABLE_NAME, updateData, "dn=" + dayNumber, null);
-		}
+	public int deleteExpiredDays(SQLiteDatabase db) {
+		/** Start time of the rollover for debug output */
+		long startTime = System.nanoTime();
+		/** First epoch day we keep */
+		int firstDay = Utils.getToday() + 1 - DAYS_TO_KEEP;
+		/** Number of deleted records */
+		int deleted = db.delete(TABLE_NAME, EXPIRED_WHERE, new String[]{Integer.toString(firstDay)});
+		db.delete(STATS_TABLE_NAME, EXPIRED_WHERE, new String[]{Integer.toString(firstDay)});
+		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Rollover deleted " + deleted + " records in " +
+				((System.nanoTime() - startTime) / 1000) + " us");
+		return deleted;
 	}
 
+	/** Insert statement for a sample, used for bulk loads */
+	private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME +
+			" (ed, ts, t, p, h) VALUES (?, ?, ?, ?, ?)";
+
 	/**
-	 * Deletes all entries with dayNumber 31
-	 *  @param db
-	 *            pointer to database
+	 * Start a bulk load of records
+	 * The returned inserter holds an open transaction until finish() or abort() is called
+	 * The statistics of the days must be rebuilt before the inserter is finished
 	 *
-     */
-	private void deleteDay(SQLiteDatabase db) {
-		db.delete(TABLE_NAME, "dn=" + 31, null);
+	 * @param db
+	 *            pointer to database
+	 * @param chunkSize
+	 *            number of records committed together, 0 = one transaction for all records
+	 * @return <code>BulkInserter</code>
+	 *            inserter for samples
+	 */
+	public BulkInserter startBulkInsert(SQLiteDatabase db, int chunkSize) {
+		return new BulkInserter(db, INSERT_SQL, chunkSize);
 	}
 
 	/**
@@ -215,6 +491,7 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 	 */
 	public void cleanDB(SQLiteDatabase db) {
 		db.execSQL("DELETE FROM " + TABLE_NAME); //delete all rows in a table
+		db.execSQL("DELETE FROM " + STATS_TABLE_NAME);
 	}
 
 	/**
@@ -223,11 +500,13 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 	 * MM = month
 	 * dd = today's day
 	 *
+	 * @param task
+	 *            background job that receives the progress and can cancel the export
 	 * @return <code>boolean</code>
 	 *              true if file could be created
-	 *              false if there was an error
+	 *              false if there was an error or the export was cancelled
 	 */
-	public static boolean exportDatabase() {
+	public static boolean exportDatabase(DatabaseTask task) {
 
 		/**First of all we check if the external storage of the device is available for writing.
 		 * Remember that the external storage is not necessarily the sd card. Very often it is
@@ -263,87 +542,119 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 				}
 			}
 
-			/** PrintWriter to write into CSV file */
-			PrintWriter printWriter = null;
+			/** Writer for the CSV file */
+			CsvWriter csvWriter = null;
+			/** Access to weather db */
+			SQLiteDatabase db = DatabaseManager.open(WeatherStation.appContext);
+			/** Cursor holding all rows of the database */
+			Cursor allRows = null;
+			/** Start time of the export for debug output */
+			long startTime = System.nanoTime();
+			/** Number of written records */
+			int rowCount = 0;
 			try
 			{
-				//if (!file.createNewFile()) return false;
-				printWriter = new PrintWriter(new FileWriter(file));
-
-				/** Instance of weather db helper */
-				WeatherStation.wsDbHelper = new WSDatabaseHelper(WeatherStation.appContext);
-				WeatherStation.dataBase = WeatherStation.wsDbHelper.getReadableDatabase();
-
-				/** Cursor holding all rows of the database */
-				Cursor allRows = WeatherStation.wsDbHelper.getAll(WeatherStation.dataBase);
+				csvWriter = new CsvWriter(file);
 
-				allRows.moveToFirst();
+				allRows = DatabaseManager.getHelper().getAll(db);
+				/** Number of records to export */
+				int totalRows = allRows.getCount();
 
 				//Write the name of the table and the name of the columns (comma separated values) in the .csv file.
-				/** String with the recorded values or description */
-				String record = "Timestamp,Datestamp,Daynumber," +
+				csvWriter.line("Timestamp,Datestamp,Daynumber," +
 						"Temperature,Pressure,Humidity," +
 						"MaxTemperature,MinTemperature,AverageTemperature," +
 						"MaxPressure,MinPressure,AveragePressure," +
-						"MaxHumidity,MinHumidity,AverageHumidity";
-				printWriter.println(record); //write the record in the .csv file
-				for (int i=0; i<allRows.getCount(); i++)
+						"MaxHumidity,MinHumidity,AverageHumidity");
+				/** Epoch day of the previous sample */
+				int lastDay = -1;
+				/** Number of values of the day so far for temperature, pressure, humidity */
+				int[] count = new int[3];
+				/** Sums of the day so far for temperature, pressure, humidity */
+				double[] sum = new double[3];
+				/** Max values of the day so far for temperature, pressure, humidity */
+				float[] max = new float[3];
+				/** Min values of the day so far for temperature, pressure, humidity */
+				float[] min = new float[3];
+				while (!task.isCancelled() && allRows.moveToNext())
 				{
-					/** The timestamps */
-					int timeStamp = allRows.getInt(1);
-					/** The day stamps */
-					int dateStamp = allRows.getInt(2);
-					/** The day number */
-					int dayNumber = allRows.getInt(3);
-					/** The temperature value */
-					float hourTemp = allRows.getFloat(4);
-					/** The pressure value */
-					float hourPress = allRows.getFloat(5);
-					/** The humidity value */
-					float hourHumid = allRows.getFloat(6);
-					/** The max temperature value */
-					float maxTemp = allRows.getFloat(7);
-					/** The min temperature value */
-					float minTemp = allRows.getFloat(8);
-					/** The average temperature value */
-					float avgTemp = allRows.getFloat(9);
-					/** The max pressure value */
-					float maxPress = allRows.getFloat(10);
-					/** The min pressure value */
-					float minPress = allRows.getFloat(11);
-					/** The average pressure value */
-					float avgPress = allRows.getFloat(12);
-					/** The max humidity value */
-					float maxHumid = allRows.getFloat(13);
-					/** The min humidity value */
-					float minHumid = allRows.getFloat(14);
-					/** The average humidity value */
-					float avgHumid = allRows.getFloat(15);
-
-					/**Create the line to write in the .csv file.
-					 * We need a String where values are comma separated.
-					 * The field date (Long) is formatted in a readable text. The amount field
-					 * is converted into String.
-					 */
-					record = Integer.toString(timeStamp) + "," + Integer.toString(dateStamp) + "," + Integer.toString(dayNumber) + "," +
-							Float.toString(hourTemp) + "," + Float.toString(hourPress) + "," + Float.toString(hourHumid) + "," +
-							Float.toString(maxTemp) + "," + Float.toString(minTemp) + "," + Float.toString(avgTemp) + "," +
-							Float.toString(maxPress) + "," + Float.toString(minPress) + "," + Float.toString(avgPress) + "," +
-							Float.toString(maxHumid) + "," + Float.toString(minHumid) + "," + Float.toString(avgHumid) + ",";
-					printWriter.println(record); //write the record in the .csv file
-					allRows.moveToNext();
+					// The file keeps the old layout where every sample had the max, min and
+					// average values of its day up to this sample, values that are missing are
+					// left out, they stay empty until the day has a value of that sensor
+					if (allRows.getInt(6) != lastDay) {
+						lastDay = allRows.getInt(6);
+						count[0] = count[1] = count[2] = 0;
+					}
+					// Time stamp, date stamp and day number
+					for (int column = 0; column <= 2; column++) {
+						csvWriter.field(allRows.getInt(column));
+					}
+					// Measured values
+					for (int i = 0; i < 3; i++) {
+						/** Measured value, Float.NaN (an empty field) if there is no value */
+						float value = getValue(allRows, 3 + i);
+						csvWriter.field(value);
+						if (Float.isNaN(value)) {
+							continue;
+						}
+						if (count[i] == 0) {
+							sum[i] = max[i] = min[i] = value;
+						} else {
+							sum[i] += value;
+							max[i] = Math.max(max[i], value);
+							min[i] = Math.min(min[i], value);
+						}
+						count[i]++;
+					}
+					// Max, min and average of temperature, pressure and humidity
+					for (int i = 0; i < 3; i++) {
+						if (count[i] == 0) {
+							csvWriter.field(Float.NaN);
+							csvWriter.field(Float.NaN);
+							csvWriter.field(Float.NaN);
+						} else {
+							csvWriter.field(max[i]);
+							csvWriter.field(min[i]);
+							csvWriter.field((float) (sum[i] / count[i]));
+						}
+					}
+					csvWriter.endLine();
+					if (++rowCount % DatabaseTask.PROGRESS_STEP == 0) {
+						task.reportProgress(rowCount, totalRows);
+					}
 				}
-				printWriter.flush();
-				allRows.close();
-				WeatherStation.dataBase.close();
-				WeatherStation.wsDbHelper.close();
+				csvWriter.close();
+				csvWriter = null;
 			}
 			catch(Exception exc) {
 				//if there are any exceptions, return false
 				return false;
 			}
 			finally {
-				if(printWriter != null) printWriter.close();
+				if (allRows != null) {
+					allRows.close();
+				}
+				DatabaseManager.release();
+				if (csvWriter != null) {
+					try {
+						csvWriter.close();
+					} catch (IOException ignore) {
+					}
+				}
+			}
+			if (task.isCancelled()) {
+				// Do not leave an incomplete file behind
+				if (!file.delete()) {
+					if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Cannot delete incomplete file");
+				}
+				return false;
+			}
+			if (BuildConfig.DEBUG) {
+				/** Duration of the export in nanoseconds */
+				long duration = System.nanoTime() - startTime;
+				Log.d(LOG_TAG, "Export of " + rowCount + " records, " + file.length() + " bytes in " +
+						(duration / 1000000) + " ms = " +
+						(rowCount * 1000000000L / Math.max(duration, 1)) + " records/s");
 			}
 
 			//If there are no errors, return true.
@@ -357,11 +668,13 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 	 * MM = month
 	 * dd = today's day
 	 *
+	 * @param task
+	 *            background job that receives the progress and can cancel the backup
 	 * @return <code>boolean</code>
 	 *            true => write to file successful
-	 *            false => write to file failed
+	 *            false => write to file failed or backup was cancelled
 	 */
-	public static boolean backupDBasJSON() {
+	public static boolean backupDBasJSON(DatabaseTask task) {
 
 		/**First of all we check if the external storage of the device is available for writing.
 		 * Remember that the external storage is not necessarily the sd card. Very often it is
@@ -397,60 +710,76 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 				}
 			}
 
-			/** JSON object to hold the JSON objects and arrays with the recorded items */
-			JSONArray jsonToday = new JSONArray();
+			/** Writer for the JSON file */
+			JsonWriter writer = null;
+			/** Access to weather db */
+			SQLiteDatabase db = DatabaseManager.open(WeatherStation.appContext);
+			/** Cursor holding all rows of the database */
+			Cursor allRows = null;
+			/** Start time of the backup for debug output */
+			long startTime = System.nanoTime();
+			/** Number of written records */
+			int rowCount = 0;
 
 			try
 			{
-				/** Instance of weather db helper */
-				WeatherStation.wsDbHelper = new WSDatabaseHelper(WeatherStation.appContext);
-				WeatherStation.dataBase = WeatherStation.wsDbHelper.getReadableDatabase();
-
-				/** Cursor holding all rows of the database */
-				Cursor allRows = WeatherStation.wsDbHelper.getAll(WeatherStation.dataBase);
-
-				allRows.moveToFirst();
-
-				for (int i=0; i<allRows.getCount(); i++)
-				{
-					/** JSON object to hold recorded measures */
-					JSONObject obj = new JSONObject();
-					obj.put("ts", allRows.getInt(1));
-					obj.put("ds", allRows.getInt(2));
-					obj.put("dn", allRows.getInt(3));
-					obj.put("t", allRows.getFloat(4));
-					obj.put("p", allRows.getFloat(5));
-					obj.put("h", allRows.getFloat(6));
-					obj.put("mat", allRows.getFloat(7));
-					obj.put("mit", allRows.getFloat(8));
-					obj.put("avt", allRows.getFloat(9));
-					obj.put("map", allRows.getFloat(10));
-					obj.put("mip", allRows.getFloat(11));
-					obj.put("avp", allRows.getFloat(12));
-					obj.put("mah", allRows.getFloat(13));
-					obj.put("minh", allRows.getFloat(14));
-					obj.put("avh", allRows.getFloat(15));
-					jsonToday.put(obj);
-					allRows.moveToNext();
+				writer = new JsonWriter(new OutputStreamWriter(new BufferedOutputStream(
+						new FileOutputStream(file), STREAM_BUFFER_SIZE), "UTF-8"));
+
+				allRows = DatabaseManager.getHelper().getAll(db);
+				/** Number of records to backup */
+				int totalRows = allRows.getCount();
+
+				// Every record is written as soon as it is read, nothing is collected on the heap
+				// Only the measured values are saved, the statistics of the days are
+				// calculated again on restore
+				writer.beginArray();
+				while (!task.isCancelled() && allRows.moveToNext()) {
+					writer.beginObject();
+					writer.name("ed").value(allRows.getInt(6));
+					writer.name("ts").value(allRows.getInt(0));
+					writeValue(writer, "t", allRows, 3);
+					writeValue(writer, "p", allRows, 4);
+					writeValue(writer, "h", allRows, 5);
+					writer.endObject();
+					if (++rowCount % DatabaseTask.PROGRESS_STEP == 0) {
+						task.reportProgress(rowCount, totalRows);
+					}
 				}
+				writer.endArray();
+				writer.flush();
 
-				allRows.close();
-				WeatherStation.dataBase.close();
-				WeatherStation.wsDbHelper.close();
 			}
 			catch(Exception exc) {
 				//if there are any exceptions, return false
 				return false;
 			}
-			try {
-				/** File writer to JSON file */
-				FileWriter fileJSON = new FileWriter(WeatherStation.exportFilePath);
-				fileJSON.write(jsonToday.toString());
-				fileJSON.flush();
-				fileJSON.close();
-			} catch (IOException e) {
+			finally {
+				if (allRows != null) {
+					allRows.close();
+				}
+				DatabaseManager.release();
+				if (writer != null) {
+					try {
+						writer.close();
+					} catch (IOException ignore) {
+					}
+				}
+			}
+			if (task.isCancelled()) {
+				// Do not leave an incomplete file behind
+				if (!file.delete()) {
+					if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Cannot delete incomplete file");
+				}
 				return false;
 			}
+			if (BuildConfig.DEBUG) {
+				/** Duration of the backup in nanoseconds */
+				long duration = System.nanoTime() - startTime;
+				Log.d(LOG_TAG, "Backup of " + rowCount + " records, " + file.length() + " bytes in " +
+						(duration / 1000000) + " ms = " +
+						(rowCount * 1000000000L / Math.max(duration, 1)) + " records/s");
+			}
 
 			//If there are no errors, return true.
 			return true;
@@ -459,109 +788,225 @@ class WSDatabaseHelper extends SQLiteOpenHelper {
 
 	/**
 	 * Restore database from JSON format file
+	 * The file is parsed record by record and every record goes straight into the bulk
+	 * insert, so memory use does not depend on the size of the backup.
+	 * The old records are deleted only after the whole file was read. If the file is
+	 * corrupt or the restore is cancelled the restored records are removed again and the
+	 * old records are kept.
 	 *
+	 * @param task
+	 *            background job that receives the progress and can cancel the restore
 	 * @return <code>boolean</code>
-	 *            true => restore to database successful
-	 *            false => restore to database failed
+	 *            true => restore to database failed or was cancelled
+	 *            false => restore to database successful
 	 */
-	public static boolean restoreDBfromJSON() {
-
-		/** List to hold the timestamps */
-		ArrayList<Integer> timeStamp = new ArrayList<>();
-		/** List to hold the day stamps */
-		ArrayList<Integer> dateStamp = new ArrayList<>();
-		/** List to hold the day numbers */
-		ArrayList<Integer> dayNumber = new ArrayList<>();
-		/** List to hold the temperature values */
-		ArrayList<Float>  hourTemp = new ArrayList<>();
-		/** List to hold the pressure values */
-		ArrayList<Float> hourPress = new ArrayList<>();
-		/** List to hold the humidity values */
-		ArrayList<Float> hourHumid = new ArrayList<>();
-		/** List to hold the max temperature values */
-		ArrayList<Float> maxTemp = new ArrayList<>();
-		/** List to hold the min temperature values */
-		ArrayList<Float> minTemp = new ArrayList<>();
-		/** List to hold the average temperature values */
-		ArrayList<Float> avgTemp = new ArrayList<>();
-		/** List to hold the max pressure values */
-		ArrayList<Float> maxPress = new ArrayList<>();
-		/** List to hold the min pressure values */
-		ArrayList<Float> minPress = new ArrayList<>();
-		/** List to hold the average pressure values */
-		ArrayList<Float> avgPress = new ArrayList<>();
-		/** List to hold the max humidity values */
-		ArrayList<Float> maxHumid = new ArrayList<>();
-		/** List to hold the min humidity values */
-		ArrayList<Float> minHumid = new ArrayList<>();
-		/** List to hold the average humidity values */
-		ArrayList<Float> avgHumid = new ArrayList<>();
+	public static boolean restoreDBfromJSON(DatabaseTask task) {
+
+		/** Access to weather db */
+		SQLiteDatabase db = DatabaseManager.open(WeatherStation.appContext);
+		/** Instance of weather db helper */
+		WSDatabaseHelper wsDbHelper = DatabaseManager.getHelper();
+
+		/** Id of the newest record before the restore, everything above is restored data */
+		String lastOldId = Long.toString(wsDbHelper.getLastId(db));
+		/** Reader to parse the backup file */
+		JsonReader reader = null;
+		/** Bulk inserter for the restored records */
+		BulkInserter inserter = null;
+		/** Flag for failed restore */
+		boolean failed = false;
 
 		try {
-			/** Pointer to directory/file */
-			File file = new File(WeatherStation.restoreFilePath);
-
-			/** Stream to read file */
-			FileInputStream stream = new FileInputStream(file);
-			/** String that holds the JSON object */
-			String jsonStr = null;
-			try {
-				/** File channel for reading stream */
-				FileChannel fc = stream.getChannel();
-				/** Buffer for reading */
-				MappedByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
-
-				jsonStr = Charset.defaultCharset().decode(bb).toString();
-			} catch (Exception e) {
-				return true;
+			/** Stream of the backup file, its position is used for the progress */
+			FileInputStream fileStream = new FileInputStream(WeatherStation.restoreFilePath);
+			reader = new JsonReader(new InputStreamReader(new BufferedInputStream(
+					fileStream, STREAM_BUFFER_SIZE), "UTF-8"));
+			/** Size of the backup file in kB */
+			int totalKB = (int) (fileStream.getChannel().size() / 1024);
+			/** Number of restored records */
+			int rowCount = 0;
+			/** Today's epoch day, used to convert day numbers of old backups */
+			int today = Utils.getToday();
+			/** Time stamp and epoch day of one record, reused for every record */
+			int[] stamps = new int[2];
+			/** Measured values of one record, reused for every record */
+			float[] values = new float[3];
+
+			inserter = wsDbHelper.startBulkInsert(db,
+					RESTORE_CHUNK_SIZE);
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (task.isCancelled()) {
+					throw new IOException("Restore cancelled");
+				}
+				readRecord(reader, today, stamps, values);
+				inserter.insert(stamps[1], stamps[0], values[0], values[1], values[2]);
+				if (++rowCount % DatabaseTask.PROGRESS_STEP == 0) {
+					task.reportProgress((int) (fileStream.getChannel().position() / 1024), totalKB);
+				}
 			}
-			finally {
-				stream.close();
+			reader.endArray();
+
+			// The backup is complete, now the old records can go
+			// This is committed in the same transaction as the last chunk of restored records
+			db.delete(TABLE_NAME, "_id<=?", new String[]{lastOldId});
+			// Old backups can contain days that are already out of the recorded range
+			wsDbHelper.deleteExpiredDays(db);
+			wsDbHelper.rebuildDayStats(db);
+			inserter.finish();
+			inserter = null;
+		} catch (Exception e) {
+			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Restore failed: " + e.getMessage());
+			failed = true;
+			if (inserter != null) {
+				inserter.abort();
 			}
+			// Remove the chunks that were already committed
+			db.delete(TABLE_NAME, "_id>?", new String[]{lastOldId});
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+			DatabaseManager.release();
+			// Cached history is outdated, even a failed restore could have been read half way
+			HistoryCache.invalidate();
+		}
+		return failed;
+	}
+
+	/**
+	 * Get the id of the newest record
+	 *
+	 * @param db
+	 *            pointer to database
+	 * @return <code>long</code>
+	 *            highest row id, 0 if the database is empty
+	 */
+	private long getLastId(SQLiteDatabase db) {
+		/** Cursor holding the highest row id */
+		Cursor lastId = db.rawQuery("SELECT MAX(_id) FROM " + TABLE_NAME, null);
+		/** Highest row id */
+		long id = 0;
+		if (lastId.moveToFirst() && !lastId.isNull(0)) {
+			id = lastId.getLong(0);
+		}
+		lastId.close();
+		return id;
+	}
 
-			/** JSON array with the backup data */
-			JSONArray jsonFromBackup = new JSONArray(jsonStr);
-
-			// looping through all nodes
-			for (int i = 0; i < jsonFromBackup.length(); i++) {
-				/** JSON object for a single data record */
-				JSONObject obj = jsonFromBackup.getJSONObject(i);
-
-				timeStamp.add(obj.getInt("ts"));
-				dateStamp.add(obj.getInt("ds"));
-				dayNumber.add(obj.getInt("dn"));
-				hourTemp.add((float) obj.getDouble("t"));
-				hourPress.add((float) obj.getDouble("p"));
-				hourHumid.add((float) obj.getDouble("h"));
-				maxTemp.add((float) obj.getDouble("mat"));
-				minTemp.add((float) obj.getDouble("mit"));
-				avgTemp.add((float) obj.getDouble("avt"));
-				maxPress.add((float) obj.getDouble("map"));
-				minPress.add((float) obj.getDouble("mip"));
-				avgPress.add((float) obj.getDouble("avp"));
-				maxHumid.add((float) obj.getDouble("mah"));
-				minHumid.add((float) obj.getDouble("minh"));
-				avgHumid.add((float) obj.getDouble("avh"));
+	/**
+	 * Write a measured value of a record of a JSON backup
+	 *
+	 * @param writer
+	 *            writer positioned in the record object
+	 * @param name
+	 *            name of the value
+	 * @param cursor
+	 *            cursor positioned on the record
+	 * @param column
+	 *            index of the column
+	 * @throws IOException
+	 *            if the value could not be written
+	 */
+	private static void writeValue(JsonWriter writer, String name, Cursor cursor, int column)
+			throws IOException {
+		writer.name(name);
+		if (cursor.isNull(column)) {
+			writer.nullValue();
+		} else {
+			writer.value(Float.valueOf(cursor.getFloat(column)));
+		}
+	}
+
+	/**
+	 * Read a measured value of a record of a JSON backup
+	 *
+	 * @param reader
+	 *            reader positioned before the value
+	 * @return <code>float</code>
+	 *            measured value, Float.NaN if there is no value
+	 * @throws IOException
+	 *            if the value is not a number or null
+	 */
+	private static float readValue(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return Float.NaN;
+		}
+		return (float) reader.nextDouble();
+	}
+
+	/**
+	 * Read one record of a JSON backup
+	 * Backups written before the statistics table was added contain the max, min and
+	 * average values of the day in every record, these are skipped
+	 *
+	 * @param reader
+	 *            reader positioned before the record object
+	 * @param today
+	 *            today's epoch day, used for backups that only have the day number
+	 * @param stamps
+	 *            receives time stamp and epoch day
+	 * @param values
+	 *            receives temperature, pressure and humidity
+	 * @throws IOException
+	 *            if the record is not valid JSON or a value is missing
+	 */
+	private static void readRecord(JsonReader reader, int today, int[] stamps, float[] values)
+			throws IOException {
+		/** Bit mask of the values found in the record */
+		int found = 0;
+		/** Day number, only used if the record has no epoch day */
+		int dayNumber = 0;
+		/** Flag if the record has an epoch day */
+		boolean hasEpochDay = false;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			/** Name of the value */
+			String name = reader.nextName();
+			switch (name) {
+				case "t":
+					values[0] = readValue(reader);
+					found |= 1;
+					break;
+				case "p":
+					values[1] = readValue(reader);
+					found |= 2;
+					break;
+				case "h":
+					values[2] = readValue(reader);
+					found |= 4;
+					break;
+				case "ts":
+					stamps[0] = reader.nextInt();
+					found |= 8;
+					break;
+				case "ed":
+					stamps[1] = reader.nextInt();
+					hasEpochDay = true;
+					found |= 16;
+					break;
+				case "dn":
+					dayNumber = reader.nextInt();
+					found |= 16;
+					break;
+				default:
+					reader.skipValue();
+					break;
 			}
-		} catch (Exception e) {
-			return true;
 		}
+		reader.endObject();
 
-		/** Instance of weather db helper */
-		WeatherStation.wsDbHelper = new WSDatabaseHelper(WeatherStation.appContext);
-		WeatherStation.dataBase = WeatherStation.wsDbHelper.getWritableDatabase();
-
-		WeatherStation.wsDbHelper.cleanDB(WeatherStation.dataBase);
-		// Write restore data to the database
-		for (int i=0; i<timeStamp.size(); i++) {
-			WeatherStation.wsDbHelper.addDay(WeatherStation.dataBase, timeStamp.get(i), dateStamp.get(i), dayNumber.get(i),
-					hourTemp.get(i), hourPress.get(i), hourHumid.get(i),
-					maxTemp.get(i), minTemp.get(i), avgTemp.get(i),
-					maxPress.get(i), minPress.get(i), avgPress.get(i),
-					maxHumid.get(i), minHumid.get(i), avgHumid.get(i));
+		if (found != 31) {
+			throw new IOException("Incomplete record in backup");
+		}
+		// Backups written before the epoch day was stored only have the relative day number
+		if (!hasEpochDay) {
+			stamps[1] = today + 1 - dayNumber;
 		}
-		WeatherStation.dataBase.close();
-		WeatherStation.wsDbHelper.close();
-		return false;
 	}
 }
@@ -12,26 +12,29 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
+import android.graphics.Color;
 import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Typeface;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.widget.DrawerLayout;
 import android.support.v7.app.ActionBarActivity;
 import android.support.v7.app.ActionBarDrawerToggle;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
+import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.AdapterView;
+import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.ListView;
@@ -50,6 +53,7 @@ import com.google.android.gms.ads.AdView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * WeatherStation
@@ -60,7 +64,7 @@ import java.util.List;
  */
 @SuppressWarnings("deprecation")
 public class WeatherStation extends ActionBarActivity implements
-		View.OnClickListener, SensorEventListener, AdapterView.OnItemClickListener {
+		View.OnClickListener, SensorHub.Subscriber, AdapterView.OnItemClickListener {
 
 	/** Debug tag */
 	static final String LOG_TAG = "WeatherStation";
@@ -86,8 +90,8 @@ public class WeatherStation extends ActionBarActivity implements
 	/** Current main gauge viewed */
 	private GaugeView gvBig;
 
-	/** Flag for update request content of main UI */
-	private boolean isUpdateRequest;
+	/** Scheduler that pushes the sensor values to the views once per frame or update time */
+	private RenderScheduler renderScheduler;
 	/** Last temperature for ui display */
 	static float lastTempValue;
 	/** Last pressure for ui display  */
@@ -96,6 +100,23 @@ public class WeatherStation extends ActionBarActivity implements
 	static float lastPressValue2;
 	/** Last humidity for ui display */
 	static float lastHumidValue;
+	/** Temperature for the gauges, -9999 if not changed since the last frame */
+	private float gaugeTemp = -9999;
+	/** Humidity for the gauges, -9999 if not changed since the last frame */
+	private float gaugeHumid = -9999;
+	/** Readings handed over from the sensor thread to the UI thread */
+	private final SpscQueue<SensorHub.Reading> readingQueue = new SpscQueue<>(16);
+	/** Flag if taking the readings from the queue is posted to the UI thread */
+	private final AtomicBoolean isTakePosted = new AtomicBoolean(false);
+	/** Handler of the UI thread */
+	private final Handler uiHandler = new Handler(Looper.getMainLooper());
+	/** Takes the readings from the queue on the UI thread */
+	private final Runnable takeReadingsTask = new Runnable() {
+		@Override
+		public void run() {
+			takeReadings();
+		}
+	};
 
 	/** User selected theme */
 	private int themeColor;
@@ -173,16 +194,50 @@ public class WeatherStation extends ActionBarActivity implements
 	private TextView tvTodayMaxHumid;
 	/** Textview to show min humidity in weather station view*/
 	private TextView tvTodayMinHumid;
-
-	/** Last measured temperature for tendency detection */
-	private final ArrayList<Float> lastTempArr = new ArrayList<>();
-	/** Last measured pressure for tendency detection */
-	private final ArrayList<Float> lastPressArr = new ArrayList<>();
-	/** Last measured humidity for tendency detection */
-	private final ArrayList<Float> lastHumidArr = new ArrayList<>();
+	/** Texts of current temperature in plot, vintage and station view */
+	private ReadingText[] rtCurrTemp;
+	/** Texts of current pressure in plot, vintage and station view */
+	private ReadingText[] rtCurrPress;
+	/** Texts of current humidity in plot, vintage and station view */
+	private ReadingText[] rtCurrHumid;
+	/** Text of today's max temperature */
+	private ReadingText rtTodayMaxTemp;
+	/** Text of today's min temperature */
+	private ReadingText rtTodayMinTemp;
+	/** Text of today's max pressure */
+	private ReadingText rtTodayMaxPress;
+	/** Text of today's min pressure */
+	private ReadingText rtTodayMinPress;
+	/** Text of today's max humidity */
+	private ReadingText rtTodayMaxHumid;
+	/** Text of today's min humidity */
+	private ReadingText rtTodayMinHumid;
+	/** Temperature unit the cached unit text belongs to, -1 if none */
+	private int cachedTempUnit = -1;
+	/** Cached temperature unit text */
+	private String tempUnitText;
+	/** Pressure unit the cached unit text belongs to, -1 if none */
+	private int cachedPressUnit = -1;
+	/** Cached pressure unit text */
+	private String pressUnitText;
+	/** Cached humidity unit text */
+	private String humidUnitText;
+
+	/** Last measured temperatures for tendency detection */
+	private final TrendEstimator tempTrend = new TrendEstimator(20);
+	/** Last measured pressures for tendency detection */
+	private final TrendEstimator pressTrend = new TrendEstimator(20);
+	/** Last measured humidity values for tendency detection */
+	private final TrendEstimator humidTrend = new TrendEstimator(20);
 
 	/** Number of plot y values */
     private static int plotValues = 20;
+	/**
+	 * Number of values shown in the continuous plots
+	 * 5 minutes at the fastest update rate, the ring buffer series and the sliding min/max
+	 * keep the cost of an update independent of this size
+	 */
+	static final int continuousPlotValues = 300;
 	/** Day to show in day view */
     private int dayToShow = 1;
 	/** Flag for continuous update of charts */
@@ -202,6 +257,12 @@ public class WeatherStation extends ActionBarActivity implements
 	static XYPlot humidLevelsPlot;
 	/** Data series for the humidity */
 	static SimpleXYSeries humidLevelsSeries = null;
+	/** Data series for the continuous temperature plot */
+	static RingBufferSeries tempLiveSeries = null;
+	/** Data series for the continuous barometric pressure plot */
+	static RingBufferSeries pressLiveSeries = null;
+	/** Data series for the continuous humidity plot */
+	static RingBufferSeries humidLiveSeries = null;
     /** Min value of temperature series */
     static float minTempValue;
 	/** Max value of temperature series */
@@ -494,6 +555,20 @@ public class WeatherStation extends ActionBarActivity implements
 		tvTodayMinPress = (TextView) findViewById(R.id.tvTodayMinPress);
 		tvTodayMaxHumid = (TextView) findViewById(R.id.tvTodayMaxHumid);
 		tvTodayMinHumid = (TextView) findViewById(R.id.tvTodayMinHumid);
+		// Live values are formatted without creating objects
+		rtCurrTemp = new ReadingText[]{new ReadingText(tvCurrTempPlot),
+				new ReadingText(tvCurrTempVintage), new ReadingText(tvCurrTempStation)};
+		rtCurrPress = new ReadingText[]{new ReadingText(tvCurrPressPlot),
+				new ReadingText(tvCurrPressVintage), new ReadingText(tvCurrPressStation)};
+		rtCurrHumid = new ReadingText[]{new ReadingText(tvCurrHumidPlot),
+				new ReadingText(tvCurrHumidVintage), new ReadingText(tvCurrHumidStation)};
+		rtTodayMaxTemp = new ReadingText(tvTodayMaxTemp);
+		rtTodayMinTemp = new ReadingText(tvTodayMinTemp);
+		rtTodayMaxPress = new ReadingText(tvTodayMaxPress);
+		rtTodayMinPress = new ReadingText(tvTodayMinPress);
+		rtTodayMaxHumid = new ReadingText(tvTodayMaxHumid);
+		rtTodayMinHumid = new ReadingText(tvTodayMinHumid);
+		humidUnitText = getString(R.string.humidSign);
 
 		/** Typeface for this apps font */
 		Typeface type = Typeface.createFromAsset(getAssets(), "LiquidCrystal-Normal.otf");
@@ -643,6 +718,43 @@ public class WeatherStation extends ActionBarActivity implements
 		/** Request for ad from Google */
 		AdRequest adRequest = new AdRequest.Builder().build();
 		mAdView.loadAd(adRequest);
+
+		renderScheduler = new RenderScheduler(new RenderScheduler.Renderer() {
+			@Override
+			public void updateGauges() {
+				WeatherStation.this.updateGauges();
+			}
+
+			@Override
+			public boolean isReady() {
+				return lastTempValue != -9999 && lastPressValue != -9999 && lastHumidValue != -9999;
+			}
+
+			@Override
+			public void render() {
+				renderValues();
+			}
+		});
+		if (BuildConfig.DEBUG) {
+			/** Overlay with frame time and update latency */
+			TextView renderStats = new TextView(this);
+			renderStats.setTextColor(Color.YELLOW);
+			renderStats.setBackgroundColor(0x80000000);
+			renderStats.setTextSize(10);
+			((FrameLayout) findViewById(android.R.id.content)).addView(renderStats,
+					new FrameLayout.LayoutParams(FrameLayout.LayoutParams.WRAP_CONTENT,
+							FrameLayout.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.END));
+			renderScheduler.setOverlay(renderStats);
+		}
+		// Show the progress or the result of an export, backup or restore that was
+		// started before the activity was created again (e.g. after a rotation)
+		DatabaseTask.attach(this);
+	}
+
+	@Override
+	protected void onDestroy() {
+		DatabaseTask.detach(this);
+		super.onDestroy();
 	}
 
 	@Override
@@ -656,50 +768,31 @@ public class WeatherStation extends ActionBarActivity implements
 	@Override
 	public void onResume() {
 		super.onResume();
-		if (mTempSensor != null) {
-			mSensorManager.registerListener(this, mTempSensor, SensorManager.SENSOR_DELAY_NORMAL);
-		}
-		if (mPressSensor != null) {
-			mSensorManager.registerListener(this, mPressSensor, SensorManager.SENSOR_DELAY_NORMAL);
-		}
-		if (mHumidSensor != null) {
-			mSensorManager.registerListener(this, mHumidSensor, SensorManager.SENSOR_DELAY_NORMAL);
-		}
+		// Keep the database open while the activity is visible, charts and today's
+		// min/max values read from it all the time
+		// Opened in the background, the first open after an update converts the database
+		DatabaseManager.keepOpen(this);
 
-		/** Handler to update UI with an delay of <code>autoUpdate</code> seconds */
+		/** Update rates the user can select */
 		int[] intUpdateRate = getResources().getIntArray(R.array.intUpdateRate);
 		autoUpdateIndex = mPrefs.getInt("UpdateRate", autoUpdateIndex);
 		autoUpdate = intUpdateRate[autoUpdateIndex];
-		final Handler handler = new Handler();
-		handler.postDelayed(new Runnable() {
-			@Override
-			public void run() {
-				runOnUiThread(new Runnable() {
-					public void run() {
-						plotRefresh();
-					}
-				});
-			}
-		}, autoUpdate);
+		lastTempValue = lastPressValue = lastHumidValue = -9999;
+		renderScheduler.start(autoUpdate);
+		SensorHub.getInstance(this).subscribe(this, SensorManager.SENSOR_DELAY_NORMAL);
 	}
 
 	@Override
 	public void onPause() {
 		super.onPause();
-		if (mTempSensor != null) {
-			mSensorManager.unregisterListener(this, mTempSensor);
-		}
-		if (mPressSensor != null) {
-			mSensorManager.unregisterListener(this, mPressSensor);
-		}
-		if (mHumidSensor != null) {
-			mSensorManager.unregisterListener(this, mHumidSensor);
-		}
-		if (lastTempArr.size() != 0) {
+		renderScheduler.stop();
+		DatabaseManager.allowClose();
+		SensorHub.getInstance(this).unsubscribe(this);
+		if (tempTrend.size() != 0) {
 			WidgetValues.forceUpdate(this,
-					lastTempArr.get(lastTempArr.size()-1),
-					lastPressArr.get(lastPressArr.size()-1),
-					lastHumidArr.get(lastHumidArr.size()-1));
+					tempTrend.getLast(),
+					pressTrend.getLast(),
+					humidTrend.getLast());
 		}
 	}
 
@@ -710,6 +803,45 @@ public class WeatherStation extends ActionBarActivity implements
 		mDrawerToggle.onConfigurationChanged(newConfig);
 	}
 
+	/**
+	 * Delete all records in the background
+	 * Waits for the sample writer like export, backup and restore do
+	 */
+	private void cleanDatabase() {
+		/** Application context, the activity can be gone when the job runs */
+		final Context context = getApplicationContext();
+		AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				DatabaseManager.beginExclusive();
+				try {
+					/** Access to weather db */
+					SQLiteDatabase db = DatabaseManager.open(context);
+					try {
+						DatabaseManager.getHelper().cleanDB(db);
+					} finally {
+						DatabaseManager.release();
+					}
+				} finally {
+					DatabaseManager.endExclusive();
+				}
+				HistoryCache.invalidate();
+			}
+		});
+	}
+
+	/**
+	 * Show or hide the buttons to jump to the next or previous day
+	 * Called when the charts of a day are loaded and the number of recorded days is known
+	 */
+	void updateDayButtons() {
+		/** Image button to jump to previous or next day */
+		ImageButton b_nav = (ImageButton) findViewById(R.id.b_next);
+		b_nav.setVisibility(dayToShow > 1 ? View.VISIBLE : View.INVISIBLE);
+		b_nav = (ImageButton) findViewById(R.id.b_last);
+		b_nav.setVisibility(dayToShow < numOfDayRecords ? View.VISIBLE : View.INVISIBLE);
+	}
+
 	@Override
 	public void onClick(View v) {
 		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "OnClick id = " + v.getId());
@@ -803,7 +935,7 @@ public class WeatherStation extends ActionBarActivity implements
 			case R.id.b_infinite:
 				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Infinite view");
 				isContinuous = true;
-				plotValues = 20;
+				plotValues = continuousPlotValues;
                 Utils.clearCharts();
 				Utils.initCharts(true, true, 1, this);
 				tempLevelsPlot.redraw();
@@ -821,26 +953,15 @@ public class WeatherStation extends ActionBarActivity implements
 				isContinuous = false;
 				plotValues = 24;
 				dayToShow = 1;
-				Utils.clearCharts();
-				Utils.initCharts(false, true, 1, this);
-				tempLevelsPlot.redraw();
-				pressLevelsPlot.redraw();
-				humidLevelsPlot.redraw();
-				if (numOfDayRecords != 1) {
-					b_nav = (ImageButton) findViewById(R.id.b_last);
-					b_nav.setVisibility(View.VISIBLE);
-				}
+				// Charts and navigation buttons are updated when the data is ready
+				ChartLoader.load(this, true, dayToShow);
 				break;
 			// Show daily overview plot
 			case R.id.b_month_view:
 				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Month view");
 				isContinuous = false;
 				plotValues = 31;
-				Utils.clearCharts();
-				Utils.initCharts(false, false, 1, this);
-				tempLevelsPlot.redraw();
-				pressLevelsPlot.redraw();
-				humidLevelsPlot.redraw();
+				ChartLoader.load(this, false, 1);
 				b_nav = (ImageButton) findViewById(R.id.b_next);
 				b_nav.setVisibility(View.INVISIBLE);
 				b_nav = (ImageButton) findViewById(R.id.b_last);
@@ -851,19 +972,7 @@ public class WeatherStation extends ActionBarActivity implements
 				if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Next day view");
 					if (dayToShow > 1) {
 						dayToShow--;
-						Utils.clearCharts();
-						Utils.initCharts(false, true, dayToShow, this);
-						tempLevelsPlot.redraw();
-						pressLevelsPlot.redraw();
-						humidLevelsPlot.redraw();
-						if (dayToShow == 1) {
-							b_nav = (ImageButton) findViewById(R.id.b_next);
-							b_nav.setVisibility(View.INVISIBLE);
-						}
-						if (numOfDayRecords != 1) {
-							b_nav = (ImageButton) findViewById(R.id.b_last);
-							b_nav.setVisibility(View.VISIBLE);
-						}
+						ChartLoader.load(this, true, dayToShow);
 					}
 				break;
 			// Jump to previous day in day by day plot view
@@ -872,38 +981,18 @@ public class WeatherStation extends ActionBarActivity implements
 					//numOfDayRecords = DataHolder.sizeOfDayEntry();
 					if (dayToShow < numOfDayRecords) {
 						dayToShow++;
-						Utils.clearCharts();
-						Utils.initCharts(false, true, dayToShow, this);
-						tempLevelsPlot.redraw();
-						pressLevelsPlot.redraw();
-						humidLevelsPlot.redraw();
-						if (dayToShow != 1) {
-							b_nav = (ImageButton) findViewById(R.id.b_next);
-							b_nav.setVisibility(View.VISIBLE);
-						}
-						if (dayToShow == numOfDayRecords) {
-							b_nav = (ImageButton) findViewById(R.id.b_last);
-							b_nav.setVisibility(View.INVISIBLE);
-						}
+						ChartLoader.load(this, true, dayToShow);
 					}
 				break;
 			// Navigation drawer activities
 			case R.id.sb_export:
-				if (!WSDatabaseHelper.exportDatabase()) {
-					Utils.myAlert(this, getString(R.string.errorExportTitle), getString(R.string.errorExport));
-				} else {
-					Utils.myAlert(this, getString(R.string.succExportTitle), getString(R.string.succExport, exportFilePath));
-				}
+				DatabaseTask.start(this, DatabaseTask.EXPORT);
 				findViewById(R.id.sb_settings_group).setVisibility(View.GONE);
 				findViewById(R.id.sb_info_group).setVisibility(View.GONE);
 				mDrawerLayout.closeDrawers();
 				break;
 			case R.id.sb_backup:
-				if (!WSDatabaseHelper.backupDBasJSON()) {
-					Utils.myAlert(this, getString(R.string.errorBackupTitle), getString(R.string.errorBackup));
-				} else {
-					Utils.myAlert(this, getString(R.string.succBackupTitle), getString(R.string.succBackup, exportFilePath));
-				}
+				DatabaseTask.start(this, DatabaseTask.BACKUP);
 				findViewById(R.id.sb_settings_group).setVisibility(View.GONE);
 				findViewById(R.id.sb_info_group).setVisibility(View.GONE);
 				mDrawerLayout.closeDrawers();
@@ -931,13 +1020,14 @@ public class WeatherStation extends ActionBarActivity implements
 						.setPositiveButton(this.getResources().getString(android.R.string.ok),
 								new DialogInterface.OnClickListener() {
 									public void onClick(DialogInterface dialog, int id) {
-										/** Instance of weather db helper */
-										wsDbHelper = new WSDatabaseHelper(appContext);
-										dataBase = wsDbHelper.getReadableDatabase();
-										wsDbHelper.cleanDB(dataBase);
-										dataBase.close();
-										wsDbHelper.close();
 										dialog.cancel();
+										// Do not clear the records while they are exported or restored
+										if (DatabaseTask.isRunning()) {
+											Utils.myAlert(appContext, getString(R.string.jobBusyTitle),
+													getString(R.string.jobBusy));
+											return;
+										}
+										cleanDatabase();
 									}
 								})
 						.setNegativeButton(this.getResources().getString(android.R.string.cancel),
@@ -1225,6 +1315,7 @@ public class WeatherStation extends ActionBarActivity implements
 								int[] intUpdateRate = getResources().getIntArray(R.array.intUpdateRate);
 								mPrefs.edit().putInt("UpdateRate", autoUpdateIndex).apply();
 								autoUpdate = intUpdateRate[autoUpdateIndex];
+								renderScheduler.setInterval(autoUpdate);
 								findViewById(R.id.sb_settings_group).setVisibility(View.GONE);
 								dialog.dismiss();
 							}
@@ -1377,18 +1468,7 @@ public class WeatherStation extends ActionBarActivity implements
     }
 
 	/**
-	 * Listen to weather sensor accuracy changes
-	 *
-	 * @param sensor
-	 *            Sensor sensor.
-	 * @param accuracy
-	 *            int accuracy.
-	 */
-	public void onAccuracyChanged(Sensor sensor, int accuracy) {
-	}
-
-	/**
-	 * Listen to weather sensor change events
+	 * Get the weather sensor values
 	 * @see <a href="http://androidcookbook.com/Recipe.seam?recipeId=2385">
 	 * Reading the Temperature Sensor</a>
 	 * @see <a href="http://www.survivingwithandroid.com/2013/09/android-sensor-tutorial-barometer-sensor.html">
@@ -1396,193 +1476,163 @@ public class WeatherStation extends ActionBarActivity implements
 	 * @see <a href="http://code.tutsplus.com/tutorials/building-apps-with-environment-sensors--pre-46879">
 	 * Building Apps with Environment Sensors</a>
 	 *
-	 * @param event
-	 *            SensorEvent event.
+	 * @param reading
+	 *            latest values of all sensors
 	 */
-	public void onSensorChanged(SensorEvent event) {
-
-		switch (event.sensor.getType()) {
-			case Sensor.TYPE_AMBIENT_TEMPERATURE:
-				lastTempValue = event.values[0];
-				gvThermo.setTargetValue(Utils.cToU(event.values[0], 1));
-				break;
-			case Sensor.TYPE_PRESSURE:
-				lastPressValue = event.values[0];
-				lastPressValue2 = Utils.pToU(event.values[0], 0);
-				break;
-			case Sensor.TYPE_RELATIVE_HUMIDITY:
-				lastHumidValue = event.values[0];
-				gvBaro.setTargetValue(lastPressValue2);
-				gvHygro.setTargetValue(lastHumidValue);
-				break;
+	public void onReading(SensorHub.Reading reading) {
+		// Runs on the sensor thread, the UI thread takes the reading from the queue
+		readingQueue.offer(reading);
+		if (isTakePosted.compareAndSet(false, true)) {
+			uiHandler.post(takeReadingsTask);
 		}
-		if (lastTempValue != -9999 && lastPressValue != -9999 && lastHumidValue != -9999 && isUpdateRequest)
-		{
-			// Get min and max values of today
-			Utils.getTodayMinMax();
-			// Update time, location and date
-			Utils.updateStationView();
-
-			/** String for tendency */
-			String tendency = getString(R.string.straightTendency);
-			lastTempArr.add(lastTempValue);
-			if (lastTempArr.size() > 20) {
-				lastTempArr.remove(0);
-			}
-			if (lastTempArr.size() > 1) {
-				tendency = Utils.arrayTrend(lastTempArr);
-			}
-			lastTempValue = Utils.cToU(lastTempValue, tempUnit);
-			// update temperature plot
-			tvCurrTempPlot.setText(String.format("%.01f",
-					lastTempValue) + Utils.tempUnit(appContext, tempUnit) + tendency);
-			tvCurrTempVintage.setText(String.format("%.01f",
-					lastTempValue) + Utils.tempUnit(appContext, tempUnit) + tendency);
-			tvCurrTempStation.setText(String.format("%.01f",
-					lastTempValue) + Utils.tempUnit(appContext, tempUnit) + tendency);
-			tvTodayMaxTemp.setText(String.format("%.01f",
-					todayMaxTemp) + Utils.tempUnit(appContext, tempUnit));
-			tvTodayMinTemp.setText(String.format("%.01f",
-					todayMinTemp) + Utils.tempUnit(appContext, tempUnit));
-			if (isContinuous) {
-				if (tempLevelsSeries.size() < 2) {
-					tempLevelsSeries.addLast(null,(Math.round(lastTempValue * 10000.0f) / 10000.0f)+0.1f);
-					tempLevelsSeries.addLast(null,(Math.round(lastTempValue * 10000.0f) / 10000.0f)-0.1f);
-				}
-				tempLevelsSeries.addLast(null, Math.round(lastTempValue * 10000.0f) / 10000.0f);
-
-				if (tempLevelsSeries.size() > plotValues) {
-					tempLevelsSeries.removeFirst();
-				}
-
-				/** Min and Max values to calculate new top and bottom range values of temperature plot */
-				float[] minMax = Utils.getMinMax(0);
-				minTempValue = minMax[0];
-				maxTempValue = minMax[1];
-				tempLevelsPlot.setRangeBottomMax(minTempValue-0.1);
-				tempLevelsPlot.setRangeBottomMin(minTempValue - 0.1);
-				tempLevelsPlot.setRangeTopMax(maxTempValue + 0.1);
-				tempLevelsPlot.setRangeTopMin(maxTempValue + 0.1);
-				tempLevelsPlot.redraw();
-			}
-
-			// update pressure plot
-			tendency = getString(R.string.straightTendency);
-			lastPressArr.add(lastPressValue);
-			if (lastPressArr.size() > 20) {
-				lastPressArr.remove(0);
-			}
-			if (lastPressArr.size() > 1) {
-				tendency = Utils.arrayTrend(lastPressArr);
-			}
-			lastPressValue = Utils.pToU(lastPressValue, pressUnit);
-			/** Padding for top and bottom of the plot depending on user selected unit */
-			float plotPadding = Utils.pressBoundary(pressUnit);
-			tvCurrPressPlot.setText(String.format(Utils.pressFormatTitle(pressUnit),
-					lastPressValue) + Utils.pressUnit(appContext, pressUnit) + tendency);
-			tvCurrPressVintage.setText(String.format(Utils.pressFormatTitle(pressUnit),
-					lastPressValue) + Utils.pressUnit(appContext, pressUnit) + tendency);
-			tvCurrPressStation.setText(String.format(Utils.pressFormatTitle(pressUnit),
-					lastPressValue) + Utils.pressUnit(appContext, pressUnit) + tendency);
-			tvTodayMaxPress.setText(String.format(Utils.pressFormatTitle(pressUnit),
-					todayMaxPress) + Utils.pressUnit(appContext, pressUnit));
-			tvTodayMinPress.setText(String.format(Utils.pressFormatTitle(pressUnit),
-					todayMinPress) + Utils.pressUnit(appContext, pressUnit));
-			if (isContinuous) {
-				if (pressLevelsSeries.size() < 2) {
-					pressLevelsSeries.addLast(null,(Math.round(lastPressValue * 10000.0f) / 10000.0f)+plotPadding);
-					pressLevelsSeries.addLast(null,(Math.round(lastPressValue * 10000.0f) / 10000.0f)-plotPadding);
-				}
-				pressLevelsSeries.addLast(null, Math.round(lastPressValue * 10000.0f) / 10000.0f);
-
-				if (pressLevelsSeries.size() > plotValues) {
-					pressLevelsSeries.removeFirst();
-				}
-
-				/** Min and Max values to calculate new top and bottom range values of pressure plot */
-				float[] minMax = Utils.getMinMax(1);
-				minPressValue = minMax[0];
-				maxPressValue = minMax[1];
-				pressLevelsPlot.setRangeBottomMax(minPressValue - plotPadding);
-				pressLevelsPlot.setRangeBottomMin(minPressValue - plotPadding);
-				pressLevelsPlot.setRangeTopMax(maxPressValue + plotPadding);
-				pressLevelsPlot.setRangeTopMin(maxPressValue + plotPadding);
-				pressLevelsPlot.redraw();
-			}
+	}
 
-			// update humidity plot
-			tendency = getString(R.string.straightTendency);
-			lastHumidArr.add(lastHumidValue);
-			if (lastHumidArr.size() > 20) {
-				lastHumidArr.remove(0);
+	/**
+	 * Take the readings handed over by the sensor thread
+	 * Only keeps the values, the views are updated by the render scheduler
+	 */
+	private void takeReadings() {
+		// Readings queued from now on need a new post
+		isTakePosted.set(false);
+		/** Start of the hand-off */
+		long startTime = System.nanoTime();
+		/** Number of readings taken */
+		int count = 0;
+		/** Reading from the queue */
+		SensorHub.Reading reading;
+		while ((reading = readingQueue.poll()) != null) {
+			if (reading.hasTemp) {
+				lastTempValue = reading.temp;
+				gaugeTemp = reading.temp;
 			}
-			if (lastHumidArr.size() > 1) {
-				tendency = Utils.arrayTrend(lastHumidArr);
+			if (reading.hasPress) {
+				lastPressValue = reading.press;
+				lastPressValue2 = Utils.pToU(reading.press, 0);
 			}
-			tvCurrHumidPlot.setText(String.format("%.01f",
-					lastHumidValue) + getString(R.string.humidSign) + tendency);
-			tvCurrHumidVintage.setText(String.format("%.01f",
-					lastHumidValue) + getString(R.string.humidSign) + tendency);
-			tvCurrHumidStation.setText(String.format("%.01f",
-					lastHumidValue) + getString(R.string.humidSign) + tendency);
-			tvTodayMaxHumid.setText(String.format("%.01f",
-					todayMaxHumid) + getString(R.string.humidSign));
-			tvTodayMinHumid.setText(String.format("%.01f",
-					todayMinHumid) + getString(R.string.humidSign));
-			if (isContinuous) {
-				if (humidLevelsSeries.size() < 2) {
-					humidLevelsSeries.addLast(null,(Math.round(lastHumidValue * 10000.0f) / 10000.0f)+0.1f);
-					humidLevelsSeries.addLast(null,(Math.round(lastHumidValue * 10000.0f) / 10000.0f)-0.1f);
-				}
-				humidLevelsSeries.addLast(null, Math.round(lastHumidValue * 10000.0f) / 10000.0f);
-
-				if (humidLevelsSeries.size() > plotValues) {
-					humidLevelsSeries.removeFirst();
-				}
-
-				/** Min and Max values to calculate new top and bottom range values of humidity plot */
-				float[] minMax = Utils.getMinMax(2);
-				minHumidValue = minMax[0];
-				maxHumidValue = minMax[1];
-				humidLevelsPlot.setRangeBottomMax(minHumidValue - 0.1);
-				humidLevelsPlot.setRangeBottomMin(minHumidValue - 0.1);
-				humidLevelsPlot.setRangeTopMax(maxHumidValue + 0.1);
-				humidLevelsPlot.setRangeTopMin(maxHumidValue + 0.1);
-				humidLevelsPlot.redraw();
+			if (reading.hasHumid) {
+				lastHumidValue = reading.humid;
+				gaugeHumid = reading.humid;
 			}
+			renderScheduler.sampleArrived();
+			count++;
+		}
+		if (count != 0) {
+			renderScheduler.samplesTaken(count, System.nanoTime() - startTime,
+					SensorHub.getInstance(this).getDeliveryTime());
+		}
+	}
 
-			// reset measured values for next sampling round
-			lastTempValue = lastPressValue = lastHumidValue = -9999;
-
-			if (autoUpdate != 1000) {
-				// reset update request flag
-				isUpdateRequest = false;
-
-				/** Handler to update UI with an delay of <code>autoUpdate</code> seconds */
-				final Handler handler = new Handler();
-				handler.postDelayed(new Runnable() {
-					@Override
-					public void run() {
-						runOnUiThread(new Runnable() {
-							public void run() {
-								plotRefresh();
-							}
-						});
-					}
-				}, autoUpdate);
-			}
+	/**
+	 * Push the latest sensor values to the gauges
+	 * Called by the render scheduler at most once per frame
+	 */
+	private void updateGauges() {
+		if (gaugeTemp != -9999) {
+			gvThermo.setTargetValue(Utils.cToU(gaugeTemp, 1));
 		}
+		if (gaugeHumid != -9999) {
+			gvBaro.setTargetValue(lastPressValue2);
+			gvHygro.setTargetValue(gaugeHumid);
+		}
+		gaugeTemp = gaugeHumid = -9999;
 	}
 
 	/**
-	 * Enable plot update every autoUpdate ms
-	 * if autoUpdate is 1000ms this is not used as the temp & humidity sensors smallest
-	 * update frequency is 1000ms
+	 * Push the latest sensor values to text views and charts
+	 * Called by the render scheduler when values of all sensors arrived and the
+	 * user selected update time has passed
 	 */
-	private void plotRefresh() {
-		if (BuildConfig.DEBUG) Log.d(LOG_TAG, "plotRefresh called");
+	private void renderValues() {
+		// Get min and max values of today
+		Utils.getTodayMinMax();
+		// Update time, location and date
+		Utils.updateStationView();
+
+		tempTrend.add(lastTempValue);
+		/** String for tendency */
+		String tendency = Utils.trendText(tempTrend.getTrend());
+		lastTempValue = Utils.cToU(lastTempValue, tempUnit);
+		if (cachedTempUnit != tempUnit) {
+			tempUnitText = Utils.tempUnit(appContext, tempUnit);
+			cachedTempUnit = tempUnit;
+		}
+		// update temperature plot
+		for (ReadingText text : rtCurrTemp) {
+			text.show(lastTempValue, 1, tempUnitText, tendency);
+		}
+		rtTodayMaxTemp.show(todayMaxTemp, 1, tempUnitText, "");
+		rtTodayMinTemp.show(todayMinTemp, 1, tempUnitText, "");
+		if (isContinuous) {
+			/** Value shown in the plot */
+			float plotValue = Math.round(lastTempValue * 10000.0f) / 10000.0f;
+			tempLiveSeries.add(plotValue);
+
+			// Min and Max values to calculate new top and bottom range values of temperature plot
+			minTempValue = tempLiveSeries.getMin();
+			maxTempValue = tempLiveSeries.getMax();
+			tempLevelsPlot.setRangeBottomMax(minTempValue-0.1);
+			tempLevelsPlot.setRangeBottomMin(minTempValue - 0.1);
+			tempLevelsPlot.setRangeTopMax(maxTempValue + 0.1);
+			tempLevelsPlot.setRangeTopMin(maxTempValue + 0.1);
+			tempLevelsPlot.redraw();
+		}
+
+		// update pressure plot
+		pressTrend.add(lastPressValue);
+		tendency = Utils.trendText(pressTrend.getTrend());
+		lastPressValue = Utils.pToU(lastPressValue, pressUnit);
+		/** Padding for top and bottom of the plot depending on user selected unit */
+		float plotPadding = Utils.pressBoundary(pressUnit);
+		if (cachedPressUnit != pressUnit) {
+			pressUnitText = Utils.pressUnit(appContext, pressUnit);
+			cachedPressUnit = pressUnit;
+		}
+		/** Number of decimals for the selected pressure unit */
+		int pressDecimals = Utils.pressDecimals(pressUnit);
+		for (ReadingText text : rtCurrPress) {
+			text.show(lastPressValue, pressDecimals, pressUnitText, tendency);
+		}
+		rtTodayMaxPress.show(todayMaxPress, pressDecimals, pressUnitText, "");
+		rtTodayMinPress.show(todayMinPress, pressDecimals, pressUnitText, "");
+		if (isContinuous) {
+			/** Value shown in the plot */
+			float plotValue = Math.round(lastPressValue * 10000.0f) / 10000.0f;
+			pressLiveSeries.add(plotValue);
+
+			// Min and Max values to calculate new top and bottom range values of pressure plot
+			minPressValue = pressLiveSeries.getMin();
+			maxPressValue = pressLiveSeries.getMax();
+			pressLevelsPlot.setRangeBottomMax(minPressValue - plotPadding);
+			pressLevelsPlot.setRangeBottomMin(minPressValue - plotPadding);
+			pressLevelsPlot.setRangeTopMax(maxPressValue + plotPadding);
+			pressLevelsPlot.setRangeTopMin(maxPressValue + plotPadding);
+			pressLevelsPlot.redraw();
+		}
+
+		// update humidity plot
+		humidTrend.add(lastHumidValue);
+		tendency = Utils.trendText(humidTrend.getTrend());
+		for (ReadingText text : rtCurrHumid) {
+			text.show(lastHumidValue, 1, humidUnitText, tendency);
+		}
+		rtTodayMaxHumid.show(todayMaxHumid, 1, humidUnitText, "");
+		rtTodayMinHumid.show(todayMinHumid, 1, humidUnitText, "");
+		if (isContinuous) {
+			/** Value shown in the plot */
+			float plotValue = Math.round(lastHumidValue * 10000.0f) / 10000.0f;
+			humidLiveSeries.add(plotValue);
+
+			// Min and Max values to calculate new top and bottom range values of humidity plot
+			minHumidValue = humidLiveSeries.getMin();
+			maxHumidValue = humidLiveSeries.getMax();
+			humidLevelsPlot.setRangeBottomMax(minHumidValue - 0.1);
+			humidLevelsPlot.setRangeBottomMin(minHumidValue - 0.1);
+			humidLevelsPlot.setRangeTopMax(maxHumidValue + 0.1);
+			humidLevelsPlot.setRangeTopMin(maxHumidValue + 0.1);
+			humidLevelsPlot.redraw();
+		}
 
-		isUpdateRequest = true;
+		// reset measured values for next sampling round
 		lastTempValue = lastPressValue = lastHumidValue = -9999;
 	}
 }
@@ -3,9 +3,6 @@ package tk.giesecke.weatherstation;
 import android.app.IntentService;
 import android.appwidget.AppWidgetManager;
 import android.content.Intent;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.util.Log;
 
@@ -16,7 +13,7 @@ import android.util.Log;
  * @author Bernd Giesecke
  * @version 1.3 August 23, 2015
  */
-public class WidgetValuesService extends IntentService implements SensorEventListener {
+public class WidgetValuesService extends IntentService implements SensorHub.Subscriber {
 
 	/** Debug tag */
 	private static final String LOG_TAG = "WeatherStation-Widget";
@@ -30,20 +27,8 @@ public class WidgetValuesService extends IntentService implements SensorEventLis
 	/** App widget manager for all widgets of this app */
 	private AppWidgetManager appWidgetManager;
 
-	/** SensorManager to get info about available sensors */
-	private SensorManager mSensorManager;
-	/** Access to temp sensor */
-	private Sensor mTempSensor;
-	/** Access to pressure sensor */
-	private Sensor mPressSensor;
-	/* Access to humidity sensor */
-	private Sensor mHumidSensor;
-	/** Last temperature for hourly recording */
-	private float lastTempValue;
-	/** Last pressure for hourly recording */
-	private float lastPressValue;
-	/** Last humidity for hourly recording */
-	private float lastHumidValue;
+	/** Shared registration of the weather sensors */
+	private SensorHub sensorHub;
 
 	public WidgetValuesService() {
 		super(WidgetValuesService.class.getName());
@@ -68,53 +53,17 @@ public class WidgetValuesService extends IntentService implements SensorEventLis
 				if (BuildConfig.DEBUG)
 					Log.d(LOG_TAG, "appWidgetIds[" + i + "] = " + appWidgetIds[i]);
 			}
-			// preset values
-			lastTempValue = 0;
-			lastPressValue = 0;
-			lastHumidValue = 0;
-
-			// connect to temperature sensor
-			mSensorManager = (SensorManager)getSystemService(SENSOR_SERVICE);
-			// connect to temperature sensor
-			/* Access to temp sensor */
-			mTempSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_AMBIENT_TEMPERATURE);
-			// connect to air pressure sensor
-			/* Access to pressure sensor */
-			mPressSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE);
-			// connect to humidity sensor
-			/* Access to humidity sensor */
-			mHumidSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_RELATIVE_HUMIDITY);
-
-			if (mTempSensor != null) {
-				mSensorManager.registerListener(this, mTempSensor, SensorManager.SENSOR_DELAY_FASTEST);
-				lastTempValue = -9999;
-			}
-			if (mPressSensor != null) {
-				mSensorManager.registerListener(this, mPressSensor, SensorManager.SENSOR_DELAY_FASTEST);
-				lastPressValue = -9999;
-			}
-			if (mHumidSensor != null) {
-				mSensorManager.registerListener(this, mHumidSensor, SensorManager.SENSOR_DELAY_FASTEST);
-				lastHumidValue = -9999;
-			}
+			// connect to the sensors, values arrive in onReading()
+			// One complete reading is enough, a slow rate keeps the shared registration slow
+			sensorHub = SensorHub.getInstance(this);
+			sensorHub.subscribe(this, SensorManager.SENSOR_DELAY_NORMAL);
 		} else { // Somethings terrible wrong here, this should not be called when numWidgets is 0
 			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "numWidgets = " + numWidgets);
 		}
 	}
 
 	/**
-	 * Listen to temperature sensor accuracy changes
-	 *
-	 * @param sensor
-	 *            Sensor sensor.
-	 * @param accuracy
-	 *            Sensor accuracy.
-	 */
-	public void onAccuracyChanged(Sensor sensor, int accuracy) {
-	}
-
-	/**
-	 * Listen to weather sensor change events
+	 * Get the weather sensor values
 	 * @see <a href="http://androidcookbook.com/Recipe.seam?recipeId=2385">
 	 * Reading the Temperature Sensor</a>
 	 * @see <a href="http://www.survivingwithandroid.com/2013/09/android-sensor-tutorial-barometer-sensor.html">
@@ -122,43 +71,25 @@ public class WidgetValuesService extends IntentService implements SensorEventLis
 	 * @see <a href="http://code.tutsplus.com/tutorials/building-apps-with-environment-sensors--pre-46879">
 	 * Building Apps with Environment Sensors</a>
 	 *
-	 * @param event
-	 *            SensorEvent event.
+	 * @param reading
+	 *            latest values of all sensors
 	 */
-	public void onSensorChanged(SensorEvent event) {
-		switch (event.sensor.getType()) {
-			case Sensor.TYPE_AMBIENT_TEMPERATURE:
-				lastTempValue = Math.round(event.values[0] * 1000.0f) / 1000.0f;
-				break;
-			case Sensor.TYPE_PRESSURE:
-				lastPressValue = Math.round(event.values[0] * 1000.0f) / 1000.0f;
-				break;
-			case Sensor.TYPE_RELATIVE_HUMIDITY:
-				lastHumidValue = Math.round(event.values[0] * 1000.0f) / 1000.0f;
-				break;
-		}
-		if (lastTempValue != -9999 && lastPressValue != -9999 && lastHumidValue != -9999)
+	public void onReading(SensorHub.Reading reading) {
+		if (reading.isComplete)
 		{
 			if (BuildConfig.DEBUG) Log.d(LOG_TAG, "Widget update ready");
 
+			// values of missing sensors stay 0
 			if (appWidgetIds.length != 0) {
 				for (int appWidgetId : appWidgetIds) {
 					WidgetValues.updateAppWidget(getApplicationContext(), appWidgetManager, appWidgetId,
-							lastTempValue,
-							lastPressValue,
-							lastHumidValue);
+							Math.round(reading.temp * 1000.0f) / 1000.0f,
+							Math.round(reading.press * 1000.0f) / 1000.0f,
+							Math.round(reading.humid * 1000.0f) / 1000.0f);
 				}
 			}
 
-			if (mTempSensor != null) {
-				mSensorManager.unregisterListener(this, mTempSensor);
-			}
-			if (mPressSensor != null) {
-				mSensorManager.unregisterListener(this, mPressSensor);
-			}
-			if (mHumidSensor != null) {
-				mSensorManager.unregisterListener(this, mHumidSensor);
-			}
+			sensorHub.unsubscribe(this);
 		}
 	}
 }
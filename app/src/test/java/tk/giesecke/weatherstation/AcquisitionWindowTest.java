@@ -0,0 +1,92 @@
+package tk.giesecke.weatherstation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AcquisitionWindowTest
+ * checks median and trimmed mean of the collected readings, also for windows that are
+ * empty, only partly filled or get more readings than they hold
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class AcquisitionWindowTest {
+
+	@Test
+	public void emptyChannel() {
+		/** Window under test */
+		AcquisitionWindow window = new AcquisitionWindow(5, AcquisitionWindow.MEDIAN, 0f);
+		assertEquals(0, window.getCount(AcquisitionWindow.TEMP));
+		assertFalse(window.isFull(AcquisitionWindow.TEMP));
+		assertEquals(0f, window.getResult(AcquisitionWindow.TEMP), 0f);
+	}
+
+	@Test
+	public void medianIgnoresOutliers() {
+		/** Window under test */
+		AcquisitionWindow window = new AcquisitionWindow(5, AcquisitionWindow.MEDIAN, 0f);
+		// Warm-up reading and a spike
+		add(window, AcquisitionWindow.TEMP, 35f, 21.2f, 21.0f, -40f, 21.1f);
+		assertTrue(window.isFull(AcquisitionWindow.TEMP));
+		assertEquals(21.1f, window.getResult(AcquisitionWindow.TEMP), 0f);
+		// Even number of readings gives the mean of the middle two
+		add(window, AcquisitionWindow.HUMID, 40f, 80f, 50f, 60f);
+		assertFalse(window.isFull(AcquisitionWindow.HUMID));
+		assertEquals(55f, window.getResult(AcquisitionWindow.HUMID), 0f);
+		// The channels do not mix
+		assertEquals(0, window.getCount(AcquisitionWindow.PRESS));
+		assertEquals(0f, window.getResult(AcquisitionWindow.PRESS), 0f);
+	}
+
+	@Test
+	public void trimmedMeanRemovesBothEnds() {
+		/** Window under test, 20% removed at each end */
+		AcquisitionWindow window = new AcquisitionWindow(10, AcquisitionWindow.TRIMMED_MEAN, 0.2f);
+		add(window, AcquisitionWindow.PRESS,
+				1013f, 1014f, 900f, 1012f, 1013f, 1100f, 1015f, 1011f, 1013f, 1014f);
+		// 900, 1011 and 1015, 1100 are removed
+		assertEquals((1012f + 1013f + 1013f + 1013f + 1014f + 1014f) / 6f,
+				window.getResult(AcquisitionWindow.PRESS), 0.001f);
+	}
+
+	@Test
+	public void trimmedMeanKeepsAtLeastOneReading() {
+		/** Window under test, nearly half removed at each end */
+		AcquisitionWindow window = new AcquisitionWindow(4, AcquisitionWindow.TRIMMED_MEAN, 0.49f);
+		add(window, AcquisitionWindow.HUMID, 50f, 70f);
+		assertEquals(60f, window.getResult(AcquisitionWindow.HUMID), 0f);
+		add(window, AcquisitionWindow.TEMP, 20f);
+		assertEquals(20f, window.getResult(AcquisitionWindow.TEMP), 0f);
+		add(window, AcquisitionWindow.PRESS, 1000f, 1010f, 1020f);
+		assertEquals(1010f, window.getResult(AcquisitionWindow.PRESS), 0f);
+	}
+
+	@Test
+	public void readingsOfAFullChannelAreIgnored() {
+		/** Window under test */
+		AcquisitionWindow window = new AcquisitionWindow(3, AcquisitionWindow.MEDIAN, 0f);
+		add(window, AcquisitionWindow.TEMP, 20f, 21f, 22f, 99f, 99f);
+		assertEquals(3, window.getCount(AcquisitionWindow.TEMP));
+		assertEquals(21f, window.getResult(AcquisitionWindow.TEMP), 0f);
+	}
+
+	/**
+	 * Add readings to a channel
+	 *
+	 * @param window
+	 *            window to add to
+	 * @param channel
+	 *            TEMP, PRESS or HUMID
+	 * @param readings
+	 *            readings to add
+	 */
+	private void add(AcquisitionWindow window, int channel, float... readings) {
+		for (float reading : readings) {
+			window.add(channel, reading);
+		}
+	}
+}
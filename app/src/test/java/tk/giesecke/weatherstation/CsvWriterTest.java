@@ -0,0 +1,135 @@
+package tk.giesecke.weatherstation;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * CsvWriterTest
+ * writes a synthetic year of hourly records in the layout of the CSV export and compares
+ * the file byte by byte with the text the export wrote before with Float.toString()
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class CsvWriterTest {
+
+	/** Number of records of a year of hourly samples */
+	private static final int RECORDS = 365 * 24;
+	/** Header line of the export */
+	private static final String HEADER = "Timestamp,Datestamp,Daynumber," +
+			"Temperature,Pressure,Humidity";
+
+	/** Line separator as used by PrintWriter.println() */
+	private final String lineSeparator = System.getProperty("line.separator");
+
+	@Test
+	public void syntheticYearMatchesFloatToString() throws IOException {
+		/** Measured values of the year, temperature, pressure and humidity per record */
+		float[] values = createYear();
+		/** File written by the CSV writer */
+		File file = File.createTempFile("export", ".csv");
+		try {
+			/** CSV writer under test */
+			CsvWriter csvWriter = new CsvWriter(file);
+			csvWriter.line(HEADER);
+			for (int record = 0; record < RECORDS; record++) {
+				csvWriter.field(record % 24);
+				csvWriter.field(record / 24 % 31 + 1);
+				csvWriter.field(365 - record / 24);
+				for (int i = 0; i < 3; i++) {
+					csvWriter.field(values[record * 3 + i]);
+				}
+				csvWriter.endLine();
+			}
+			csvWriter.close();
+
+			/** Text as written with Float.toString(), an empty field for no value */
+			StringBuilder expected = new StringBuilder(HEADER).append(lineSeparator);
+			for (int record = 0; record < RECORDS; record++) {
+				expected.append(record % 24).append(',')
+						.append(record / 24 % 31 + 1).append(',')
+						.append(365 - record / 24).append(',');
+				for (int i = 0; i < 3; i++) {
+					/** Measured value */
+					float value = values[record * 3 + i];
+					if (!Float.isNaN(value)) {
+						expected.append(Float.toString(value));
+					}
+					expected.append(',');
+				}
+				expected.append(lineSeparator);
+			}
+			/** Expected content of the file */
+			byte[] expectedBytes = expected.toString().getBytes("US-ASCII");
+
+			assertEquals(expectedBytes.length, csvWriter.getByteCount());
+			assertArrayEquals(expectedBytes, readFile(file));
+		} finally {
+			//noinspection ResultOfMethodCallIgnored
+			file.delete();
+		}
+	}
+
+	/**
+	 * Create a year of measured values with a daily cycle, noise and some missing values
+	 *
+	 * @return <code>float[]</code>
+	 *            temperature, pressure and humidity of each record
+	 */
+	private float[] createYear() {
+		/** Random generator with a fixed seed, so a failure can be repeated */
+		Random random = new Random(2015);
+		/** Measured values of the year */
+		float[] values = new float[RECORDS * 3];
+		for (int record = 0; record < RECORDS; record++) {
+			/** Daily cycle of the temperature */
+			double cycle = Math.sin(record * 2 * Math.PI / 24);
+			values[record * 3] = (float) (15 + 10 * cycle + random.nextGaussian());
+			values[record * 3 + 1] = (float) (1013 + 20 * random.nextGaussian());
+			values[record * 3 + 2] = Math.round((55 - 20 * cycle) * 10) / 10f;
+			if (random.nextInt(100) == 0) {
+				values[record * 3 + random.nextInt(3)] = Float.NaN;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Read a whole file
+	 *
+	 * @param file
+	 *            file to read
+	 * @return <code>byte[]</code>
+	 *            content of the file
+	 * @throws IOException
+	 *            if the file cannot be read
+	 */
+	private byte[] readFile(File file) throws IOException {
+		/** Content of the file */
+		byte[] content = new byte[(int) file.length()];
+		/** Stream to read the file */
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			/** Number of bytes read so far */
+			int length = 0;
+			while (length < content.length) {
+				/** Number of bytes of this read */
+				int read = stream.read(content, length, content.length - length);
+				if (read < 0) {
+					break;
+				}
+				length += read;
+			}
+		} finally {
+			stream.close();
+		}
+		return content;
+	}
+}
@@ -0,0 +1,90 @@
+package tk.giesecke.weatherstation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FastFormatTest
+ * checks that the number formatting of the CSV export writes exactly the same text as
+ * Integer.toString() and Float.toString(), both on the fast path and on the fallback
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class FastFormatTest {
+
+	/** Number of random bit patterns checked */
+	private static final int RANDOM_FLOATS = 1000000;
+
+	/** Buffer for the formatted numbers */
+	private final byte[] buffer = new byte[32];
+
+	@Test
+	public void appendIntMatchesIntegerToString() {
+		/** Values at the limits of the digit counts and of the int range */
+		int[] values = {0, 1, -1, 9, 10, -10, 99, 100, 12345, -67890,
+				Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1};
+		for (int value : values) {
+			assertEquals(Integer.toString(value), formatInt(value));
+		}
+	}
+
+	@Test
+	public void appendFloatMatchesFloatToStringForSensorValues() {
+		// Every value with up to 3 decimals in the range of temperature, pressure and humidity
+		for (int thousandths = -100000; thousandths <= 1200000; thousandths++) {
+			/** Value to check */
+			float value = thousandths / 1000f;
+			assertEquals(Float.toString(value), formatFloat(value));
+		}
+	}
+
+	@Test
+	public void appendFloatMatchesFloatToStringForAnyFloat() {
+		/** Random generator with a fixed seed, so a failure can be repeated */
+		Random random = new Random(42);
+		for (int i = 0; i < RANDOM_FLOATS; i++) {
+			/** Value with random bits, this includes NaN, infinity and denormals */
+			float value = Float.intBitsToFloat(random.nextInt());
+			assertEquals(Float.toString(value), formatFloat(value));
+		}
+		/** Values at the limits of the fast path */
+		float[] limits = {0f, -0f, 0.001f, 0.00099999f, -0.001f, 16383.999f, 16384f, -16384f,
+				1e7f, 1e-7f, Float.MIN_VALUE, Float.MAX_VALUE,
+				Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (float value : limits) {
+			assertEquals(Float.toString(value), formatFloat(value));
+		}
+	}
+
+	/**
+	 * Format an integer with FastFormat
+	 *
+	 * @param value
+	 *            value to format
+	 * @return <code>String</code>
+	 *            formatted value
+	 */
+	private String formatInt(int value) {
+		/** Position after the last written character */
+		int end = FastFormat.appendInt(buffer, 0, value);
+		return new String(buffer, 0, end);
+	}
+
+	/**
+	 * Format a float with FastFormat
+	 *
+	 * @param value
+	 *            value to format
+	 * @return <code>String</code>
+	 *            formatted value
+	 */
+	private String formatFloat(float value) {
+		/** Position after the last written character */
+		int end = FastFormat.appendFloat(buffer, 0, value);
+		return new String(buffer, 0, end);
+	}
+}
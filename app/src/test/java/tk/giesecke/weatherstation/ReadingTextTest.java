@@ -0,0 +1,112 @@
+package tk.giesecke.weatherstation;
+
+import android.widget.TextView;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.DecimalFormatSymbols;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * ReadingTextTest
+ * checks that the live readings are formatted exactly as String.format() did it and
+ * that a warmed up update of a reading does not allocate any memory
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class ReadingTextTest {
+
+	/** Number of updates before the allocations are counted */
+	private static final int WARM_UP_UPDATES = 50000;
+	/** Number of updates whose allocations are counted */
+	private static final int MEASURED_UPDATES = 10000;
+
+	/** Number symbols of the default locale, as used by ReadingText */
+	private final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+	/** Buffer for the formatted numbers */
+	private final char[] buffer = new char[64];
+
+	@Test
+	public void appendFixedMatchesStringFormat() {
+		for (int decimals = 0; decimals <= 2; decimals++) {
+			// Every temperature, pressure and humidity with up to 3 decimals, so the
+			// rounding of the last shown decimal is checked as well
+			for (int thousandths = -60000; thousandths <= 1100000; thousandths += 7) {
+				checkFixed(thousandths / 1000f, decimals);
+			}
+		}
+		/** Random generator with a fixed seed, so a failure can be repeated */
+		Random random = new Random(17);
+		for (int i = 0; i < 100000; i++) {
+			checkFixed(Float.intBitsToFloat(random.nextInt()), random.nextInt(6));
+		}
+		/** Values at the limits of the fixed-point formatting */
+		float[] limits = {0f, -0f, -0.04f, 0.05f, 0.5f, 1.5f, 2.5f, 999999.94f,
+				1e9f, -1e9f, Float.MIN_VALUE, Float.MAX_VALUE,
+				Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (float value : limits) {
+			for (int decimals = 0; decimals <= 5; decimals++) {
+				checkFixed(value, decimals);
+			}
+		}
+	}
+
+	@Test
+	public void updateDoesNotAllocate() {
+		/** Bean to read the allocated bytes of this thread */
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		assumeTrue("JVM cannot count allocations",
+				threadBean instanceof com.sun.management.ThreadMXBean);
+		/** Bean with the allocation count of the threads */
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		/** Id of this thread */
+		long threadId = Thread.currentThread().getId();
+		/** Text of the reading under test */
+		ReadingText text = new ReadingText(new TextView(null));
+		/** Values shown one after the other, changing and repeated ones */
+		float[] values = new float[256];
+		/** Random generator with a fixed seed */
+		Random random = new Random(23);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i % 4 == 0 ? values[Math.max(0, i - 1)] : 1013f + (float) random.nextGaussian();
+		}
+		for (int i = 0; i < WARM_UP_UPDATES; i++) {
+			text.show(values[i % values.length], i % 3, "mbar", i % 2 == 0 ? "" : " \u2191");
+		}
+		// Allocations of the measurement itself
+		/** Allocated bytes before the empty measurement */
+		long before = allocationBean.getThreadAllocatedBytes(threadId);
+		/** Allocations of reading the allocation count */
+		long overhead = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+		before = allocationBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_UPDATES; i++) {
+			text.show(values[i % values.length], i % 3, "mbar", i % 2 == 0 ? "" : " \u2191");
+		}
+		/** Bytes allocated by the updates */
+		long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before - overhead;
+		assertEquals(MEASURED_UPDATES + " reading updates allocated " + allocated + " bytes",
+				0, allocated);
+	}
+
+	/**
+	 * Compare the fixed-point formatting of one value with String.format()
+	 *
+	 * @param value
+	 *            value to format
+	 * @param decimals
+	 *            number of decimals
+	 */
+	private void checkFixed(float value, int decimals) {
+		/** Position after the last written character */
+		int end = FastFormat.appendFixed(buffer, 0, value, decimals,
+				symbols.getDecimalSeparator(), symbols.getZeroDigit());
+		assertEquals(String.format("%." + decimals + "f", value), new String(buffer, 0, end));
+	}
+}
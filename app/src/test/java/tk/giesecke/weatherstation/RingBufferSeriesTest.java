@@ -0,0 +1,98 @@
+package tk.giesecke.weatherstation;
+
+import com.androidplot.xy.SimpleXYSeries;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RingBufferSeriesTest
+ * feeds the same values into the ring buffer series and into the SimpleXYSeries the
+ * continuous plots used before and checks that the plot gets the same points, before
+ * and after the ring buffer wraps around
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class RingBufferSeriesTest {
+
+	/** Series sizes checked, including the smallest ones */
+	private static final int[] CAPACITIES = {1, 2, 5, 60};
+	/** Number of values added to each series */
+	private static final int VALUES = 500;
+
+	@Test
+	public void sameValuesAsSimpleXYSeries() {
+		/** Random generator with a fixed seed, so a failure can be repeated */
+		Random random = new Random(19);
+		for (int capacity : CAPACITIES) {
+			/** Series under test */
+			RingBufferSeries series = new RingBufferSeries("test", capacity);
+			/** Series as the continuous plots filled it before */
+			SimpleXYSeries reference = new SimpleXYSeries("test");
+			reference.useImplicitXVals();
+			assertEquals(capacity, series.getCapacity());
+			assertEquals("test", series.getTitle());
+			for (int i = 0; i < VALUES; i++) {
+				/** New value */
+				float value = (float) (1013 + 10 * random.nextGaussian());
+				series.add(value);
+				reference.addLast(null, value);
+				if (reference.size() > capacity) {
+					reference.removeFirst();
+				}
+				assertSameSeries(reference, series);
+			}
+		}
+	}
+
+	@Test
+	public void clearRemovesAllValues() {
+		/** Series under test */
+		RingBufferSeries series = new RingBufferSeries("test", 3);
+		for (int i = 0; i < 7; i++) {
+			series.add(i);
+		}
+		series.clear();
+		assertEquals(0, series.size());
+		assertEquals(0f, series.getMin(), 0f);
+		assertEquals(0f, series.getMax(), 0f);
+		series.add(5f);
+		series.add(4f);
+		assertEquals(2, series.size());
+		assertEquals(5f, series.getY(0).floatValue(), 0f);
+		assertEquals(4f, series.getY(1).floatValue(), 0f);
+		assertEquals(4f, series.getMin(), 0f);
+		assertEquals(5f, series.getMax(), 0f);
+	}
+
+	/**
+	 * Compare all points and the min and max of both series
+	 *
+	 * @param reference
+	 *            series as filled before
+	 * @param series
+	 *            series under test
+	 */
+	private void assertSameSeries(SimpleXYSeries reference, RingBufferSeries series) {
+		assertEquals(reference.size(), series.size());
+		/** Min of the reference values */
+		float min = Float.MAX_VALUE;
+		/** Max of the reference values */
+		float max = -Float.MAX_VALUE;
+		for (int i = 0; i < reference.size(); i++) {
+			assertEquals(reference.getX(i).intValue(), series.getX(i).intValue());
+			/** Value of the reference */
+			float value = reference.getY(i).floatValue();
+			assertEquals(value, series.getY(i).floatValue(), 0f);
+			assertEquals((double) value, series.getY(i).doubleValue(), 0.0);
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		assertEquals(min, series.getMin(), 0f);
+		assertEquals(max, series.getMax(), 0f);
+	}
+}
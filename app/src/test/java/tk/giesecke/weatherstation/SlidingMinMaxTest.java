@@ -0,0 +1,115 @@
+package tk.giesecke.weatherstation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SlidingMinMaxTest
+ * compares min and max of the sliding window after every added value with a scan over
+ * the last values, for random, rising, falling and repeated values
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class SlidingMinMaxTest {
+
+	/** Window sizes checked, including the smallest ones */
+	private static final int[] CAPACITIES = {1, 2, 3, 7, 60, 500};
+	/** Number of values added to each window */
+	private static final int VALUES = 5000;
+
+	@Test
+	public void emptyWindow() {
+		/** Window under test */
+		SlidingMinMax window = new SlidingMinMax(10);
+		assertEquals(0, window.size());
+		assertEquals(0f, window.getMin(), 0f);
+		assertEquals(0f, window.getMax(), 0f);
+	}
+
+	@Test
+	public void randomValues() {
+		/** Random generator with a fixed seed, so a failure can be repeated */
+		Random random = new Random(18);
+		/** Values to add */
+		float[] values = new float[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			values[i] = (float) (20 + 5 * random.nextGaussian());
+		}
+		checkAllCapacities(values);
+	}
+
+	@Test
+	public void risingFallingAndRepeatedValues() {
+		/** Rising values, every new value is the max */
+		float[] rising = new float[VALUES];
+		/** Falling values, every new value is the min */
+		float[] falling = new float[VALUES];
+		/** Few different values, many of them equal */
+		float[] repeated = new float[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			rising[i] = i;
+			falling[i] = -i;
+			repeated[i] = i / 3 % 4;
+		}
+		checkAllCapacities(rising);
+		checkAllCapacities(falling);
+		checkAllCapacities(repeated);
+	}
+
+	@Test
+	public void resetStartsAnEmptyWindow() {
+		/** Window under test */
+		SlidingMinMax window = new SlidingMinMax(5);
+		for (int i = 0; i < 12; i++) {
+			window.add(i);
+		}
+		window.reset(5);
+		assertEquals(0, window.size());
+		window.add(-3f);
+		assertEquals(1, window.size());
+		assertEquals(-3f, window.getMin(), 0f);
+		assertEquals(-3f, window.getMax(), 0f);
+		// A new size gives a window with the new capacity
+		window.reset(2);
+		window.add(1f);
+		window.add(2f);
+		window.add(3f);
+		assertEquals(2, window.size());
+		assertEquals(2f, window.getMin(), 0f);
+		assertEquals(3f, window.getMax(), 0f);
+	}
+
+	/**
+	 * Add the values to windows of all checked sizes and compare min and max after
+	 * every value
+	 *
+	 * @param values
+	 *            values to add
+	 */
+	private void checkAllCapacities(float[] values) {
+		for (int capacity : CAPACITIES) {
+			/** Window under test */
+			SlidingMinMax window = new SlidingMinMax(capacity);
+			for (int i = 0; i < values.length; i++) {
+				window.add(values[i]);
+				/** First value in the window */
+				int first = Math.max(0, i + 1 - capacity);
+				/** Expected min */
+				float min = values[first];
+				/** Expected max */
+				float max = values[first];
+				for (int j = first + 1; j <= i; j++) {
+					min = Math.min(min, values[j]);
+					max = Math.max(max, values[j]);
+				}
+				assertEquals(i + 1 - first, window.size());
+				assertEquals("min of window " + capacity + " at " + i, min, window.getMin(), 0f);
+				assertEquals("max of window " + capacity + " at " + i, max, window.getMax(), 0f);
+			}
+		}
+	}
+}
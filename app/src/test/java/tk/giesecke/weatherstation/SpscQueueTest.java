@@ -0,0 +1,83 @@
+package tk.giesecke.weatherstation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SpscQueueTest
+ * checks capacity, order and dropped objects of the queue on one thread and hands
+ * many objects from a producer thread to a consumer thread through a small queue
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class SpscQueueTest {
+
+	/** Number of objects handed between the threads */
+	private static final int ITEMS = 200000;
+
+	@Test
+	public void capacityIsRoundedUp() {
+		/** Queue under test, room for 4 objects */
+		SpscQueue<Integer> queue = new SpscQueue<>(3);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+		assertEquals(1, queue.getDropped());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void wrapsAround() {
+		/** Queue under test */
+		SpscQueue<Integer> queue = new SpscQueue<>(4);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(queue.offer(i));
+			assertTrue(queue.offer(-i));
+			assertEquals(Integer.valueOf(i), queue.poll());
+			assertEquals(Integer.valueOf(-i), queue.poll());
+			assertNull(queue.poll());
+		}
+		assertEquals(0, queue.getDropped());
+	}
+
+	@Test
+	public void twoThreadsKeepOrder() throws InterruptedException {
+		/** Queue under test, small so the producer often finds it full */
+		final SpscQueue<Integer> queue = new SpscQueue<>(16);
+		/** Producer thread, retries an object until the queue takes it */
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < ITEMS; i++) {
+					while (!queue.offer(i)) {
+						Thread.yield();
+					}
+				}
+			}
+		});
+		producer.start();
+		/** Next object expected by the consumer */
+		int expected = 0;
+		while (expected < ITEMS) {
+			/** Object taken from the queue, null if it is empty */
+			Integer item = queue.poll();
+			if (item == null) {
+				Thread.yield();
+			} else {
+				assertEquals(expected, item.intValue());
+				expected++;
+			}
+		}
+		producer.join();
+		assertNull(queue.poll());
+	}
+}
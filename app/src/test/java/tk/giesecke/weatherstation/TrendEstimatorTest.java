@@ -0,0 +1,155 @@
+package tk.giesecke.weatherstation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TrendEstimatorTest
+ * compares slope, intercept, t statistic and trend of the running sums with a two-pass
+ * least-squares fit over the values in the window, after every added value
+ *
+ * @author Bernd Giesecke
+ * @version 1.3 August 23, 2015
+ */
+public class TrendEstimatorTest {
+
+	/** Window sizes checked */
+	private static final int[] CAPACITIES = {3, 10, 60};
+	/** Number of values added to each window, many times the window size */
+	private static final int VALUES = 20000;
+	/** Allowed relative error against the reference fit */
+	private static final double TOLERANCE = 1e-6;
+
+	@Test
+	public void emptyAndShortWindows() {
+		/** Estimator under test */
+		TrendEstimator estimator = new TrendEstimator(10);
+		assertEquals(0, estimator.size());
+		assertEquals(0f, estimator.getLast(), 0f);
+		assertEquals(0.0, estimator.getSlope(), 0.0);
+		assertEquals(0.0, estimator.getIntercept(), 0.0);
+		assertEquals(TrendEstimator.STEADY, estimator.getTrend());
+		estimator.add(5f);
+		estimator.add(7f);
+		// Two values give a line, but no t statistic
+		assertEquals(2.0, estimator.getSlope(), 1e-12);
+		assertEquals(5.0, estimator.getIntercept(), 1e-12);
+		assertEquals(0.0, estimator.getTStatistic(), 0.0);
+		assertEquals(TrendEstimator.STEADY, estimator.getTrend());
+		estimator.reset();
+		assertEquals(0, estimator.size());
+		assertEquals(0.0, estimator.getSlope(), 0.0);
+	}
+
+	@Test
+	public void exactLinesAndConstantValues() {
+		/** Rising line */
+		TrendEstimator rising = new TrendEstimator(10);
+		/** Falling line */
+		TrendEstimator falling = new TrendEstimator(10);
+		/** Constant values */
+		TrendEstimator constant = new TrendEstimator(10);
+		for (int i = 0; i < 25; i++) {
+			rising.add(1000f + i);
+			falling.add(20f - i * 0.5f);
+			constant.add(21.5f);
+		}
+		assertEquals(1.0, rising.getSlope(), 1e-9);
+		assertEquals(1015.0, rising.getIntercept(), 1e-9);
+		assertEquals(TrendEstimator.RISING, rising.getTrend());
+		assertEquals(-0.5, falling.getSlope(), 1e-9);
+		assertEquals(TrendEstimator.FALLING, falling.getTrend());
+		assertEquals(0.0, constant.getSlope(), 0.0);
+		assertEquals(0.0, constant.getTStatistic(), 0.0);
+		assertEquals(TrendEstimator.STEADY, constant.getTrend());
+	}
+
+	@Test
+	public void sameFitAsTwoPassLeastSquares() {
+		/** Random generator with a fixed seed, so a failure can be repeated */
+		Random random = new Random(20);
+		for (int capacity : CAPACITIES) {
+			/** Estimator under test */
+			TrendEstimator estimator = new TrendEstimator(capacity);
+			/** All added values */
+			float[] values = new float[VALUES];
+			for (int i = 0; i < VALUES; i++) {
+				// Pressure with a slowly changing drift, so rising, falling and steady
+				// windows all show up
+				values[i] = (float) (1013 + 5 * Math.sin(i / 300.0) + 0.2 * random.nextGaussian());
+				estimator.add(values[i]);
+				/** Number of values in the window */
+				int n = Math.min(i + 1, capacity);
+				assertEquals(n, estimator.size());
+				assertEquals(values[i], estimator.getLast(), 0f);
+				checkFit(estimator, values, i + 1 - n, n);
+			}
+		}
+	}
+
+	/**
+	 * Compare the estimator with a two-pass least-squares fit of the window
+	 *
+	 * @param estimator
+	 *            estimator under test
+	 * @param values
+	 *            all added values
+	 * @param first
+	 *            index of the oldest value in the window
+	 * @param n
+	 *            number of values in the window
+	 */
+	private void checkFit(TrendEstimator estimator, float[] values, int first, int n) {
+		/** Mean of the positions */
+		double meanX = (n - 1) / 2.0;
+		/** Mean of the values */
+		double meanY = 0;
+		for (int i = 0; i < n; i++) {
+			meanY += values[first + i];
+		}
+		meanY /= n;
+		/** Sum of (x - mean x)^2 */
+		double sxx = 0;
+		/** Sum of (x - mean x) * (y - mean y) */
+		double sxy = 0;
+		for (int i = 0; i < n; i++) {
+			sxx += (i - meanX) * (i - meanX);
+			sxy += (i - meanX) * (values[first + i] - meanY);
+		}
+		/** Slope of the reference fit */
+		double slope = n < 2 ? 0 : sxy / sxx;
+		/** Intercept of the reference fit */
+		double intercept = meanY - slope * meanX;
+		/** Sum of the squared residuals */
+		double sse = 0;
+		for (int i = 0; i < n; i++) {
+			/** Distance of the value from the line */
+			double residual = values[first + i] - (intercept + slope * i);
+			sse += residual * residual;
+		}
+		assertEquals(slope, estimator.getSlope(), TOLERANCE * Math.max(1, Math.abs(slope)));
+		assertEquals(intercept, estimator.getIntercept(), TOLERANCE * Math.abs(intercept));
+		if (n < 3) {
+			return;
+		}
+		/** t statistic of the reference fit */
+		double t = slope / Math.sqrt(sse / (n - 2) / sxx);
+		if (Math.abs(slope) * (n - 1) < Math.ulp(Math.abs(values[first + n - 1]))) {
+			// Change over the window is below the resolution of the values, no trend
+			t = 0;
+		}
+		/** t statistic of the estimator */
+		double estimated = estimator.getTStatistic();
+		assertEquals(t, estimated, 1e-4 * Math.max(1, Math.abs(t)));
+		// The trend is only compared away from the threshold, where rounding decides it
+		if (Math.abs(Math.abs(t) - 2.0) > 1e-3) {
+			/** Expected trend */
+			int trend = t > 2.0 ? TrendEstimator.RISING :
+					t < -2.0 ? TrendEstimator.FALLING : TrendEstimator.STEADY;
+			assertEquals(trend, estimator.getTrend());
+		}
+	}
+}